@@ -0,0 +1,136 @@
+package bguspl.set;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * JMH benchmarks of the set finding hot path of UtilImpl.
+ * The table is a random (but fixed) selection of tableSize cards of the deck (the whole deck if it is smaller).
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class UtilBenchmark {
+
+    @Param({"3", "4"})
+    public int featureSize;
+
+    @Param({"3", "4", "5"})
+    public int featureCount;
+
+    @Param({"12", "24", "81", "243"})
+    public int tableSize;
+
+    /**
+     * The number of random card groups testSet cycles through.
+     */
+    private static final int GROUPS = 1024;
+
+    private Util util;
+    private List<Integer> table;
+    private int[] tableCards;
+    private int[][] groups;
+    private int[] first;
+    private int[] second;
+    private int[] third;
+    private int next;
+
+    @Setup
+    public void setup() {
+        Logger logger = Logger.getLogger("UtilBenchmark");
+        logger.setUseParentHandlers(false);
+        Properties properties = new Properties();
+        properties.setProperty("FeatureSize", String.valueOf(featureSize));
+        properties.setProperty("FeatureCount", String.valueOf(featureCount));
+        properties.setProperty("LogLevel", "OFF");
+        Config config = new Config(logger, properties);
+        util = new UtilImpl(config);
+
+        Random random = new Random(featureSize * 31L + featureCount);
+        List<Integer> deck = IntStream.range(0, config.deckSize).boxed().collect(Collectors.toList());
+        Collections.shuffle(deck, random);
+        table = deck.subList(0, Math.min(tableSize, config.deckSize));
+        tableCards = table.stream().mapToInt(Integer::intValue).toArray();
+
+        groups = new int[GROUPS][featureSize];
+        for (int[] group : groups)
+            for (int i = 0; i < featureSize; ++i)
+                group[i] = tableCards[random.nextInt(tableCards.length)];
+
+        // three card groups as struct-of-arrays, a third of them legal sets
+        first = new int[GROUPS];
+        second = new int[GROUPS];
+        third = new int[GROUPS];
+        List<int[]> sets = featureSize == 3 ? util.findSets(IntStream.range(0, config.deckSize).toArray(), Integer.MAX_VALUE)
+                : Collections.emptyList();
+        for (int i = 0; i < GROUPS; ++i) {
+            int[] group = i % 3 == 0 && featureSize == 3 ? sets.get(random.nextInt(sets.size())) : new int[]{
+                    random.nextInt(config.deckSize), random.nextInt(config.deckSize), random.nextInt(config.deckSize)};
+            first[i] = group[0];
+            second[i] = group[1];
+            third[i] = group[2];
+        }
+    }
+
+    @Benchmark
+    public boolean testSet() {
+        next = (next + 1) & (GROUPS - 1);
+        return util.testSet(groups[next]);
+    }
+
+    /**
+     * Checks all GROUPS three card groups one call at a time (compare with testSetsBatch).
+     */
+    @Benchmark
+    public BitSet testSetsLoop() {
+        BitSet legal = new BitSet(GROUPS);
+        for (int i = 0; i < GROUPS; ++i)
+            if (util.testSet(first[i], second[i], third[i])) legal.set(i);
+        return legal;
+    }
+
+    /**
+     * Checks all GROUPS three card groups in one batch.
+     */
+    @Benchmark
+    public BitSet testSetsBatch() {
+        return util.testSets(first, second, third);
+    }
+
+    @Benchmark
+    public List<int[]> findFirstSet() {
+        return util.findSets(table, 1);
+    }
+
+    @Benchmark
+    public List<int[]> findAllSets() {
+        return util.findSets(table, Integer.MAX_VALUE);
+    }
+
+    @Benchmark
+    public int[][] cardsToFeatures() {
+        return util.cardsToFeatures(tableCards);
+    }
+}
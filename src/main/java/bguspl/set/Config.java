@@ -36,6 +36,48 @@ public class Config {
      */
     public final int deckSize;
 
+    /**
+     * The engine used by Util::findSets ("closure" for the O(n^2) third card lookup, "pruning" for a search that drops
+     * partial sets as soon as a feature can no longer be all-same or all-different, "combinatorial" for the exhaustive
+     * search). The closure engine is only used when featureSize is 3, otherwise findSets falls back to pruning.
+     */
+    public final String setFinder;
+
+    /**
+     * The number of threads Util::findSets searches large collections of cards with (1 searches on the calling
+     * thread, 0 uses all available processors)
+     */
+    public final int findSetsParallelism;
+
+    /**
+     * Whether a parallel Util::findSets returns the same sets in the same order as a sequential one (otherwise it may
+     * return any count sets, as soon as they are found)
+     */
+    public final boolean findSetsOrdered;
+
+    /**
+     * The directory of the set index files (empty to build the set index in memory). The index of every deck is
+     * generated there once and then mapped into memory by every game using the same deck.
+     */
+    public final String setIndexDirectory;
+
+    /**
+     * The seed of the random order the dealer deals the cards in (null for a different order every game)
+     */
+    public final Long deckSeed;
+
+    /**
+     * How the dealer chooses the cards to place on the table ("random" deals random cards, "smart" first deals the
+     * cards that complete a legal set whenever the table has none and the cards left in the deck allow it)
+     */
+    public final String dealingStrategy;
+
+    /**
+     * Whether the player and computer player threads are virtual threads (needs Java 21 or later, otherwise platform
+     * threads are used)
+     */
+    public final boolean virtualThreads;
+
     /**
      * The number of human players in the game.
      */
@@ -81,6 +123,22 @@ public class Config {
      */
     public final long tableDelayMillis;
 
+    /**
+     * The strategy, the skill (between 0 and 1) and the think time (in milliseconds) of every player, used by the
+     * computer players (see bguspl.set.ex.AiStrategy). A random player waits a random 0, 1 or 2 think times between
+     * key presses and goes for a legal set with probability skill, a perfect player selects a legal set every think
+     * time and a human player reacts in about a think time and selects a legal set with probability skill.
+     */
+    private final String[] computerStrategies;
+    private final double[] computerSkills;
+    private final long[] computerDelayMillis;
+
+    /**
+     * The number of threads that run all the computer players (every step of a computer player is a task scheduled on
+     * them, so a computer player has no thread of its own)
+     */
+    public final int computerThreads;
+
     /**
      * The number of milliseconds to pause at the end of the game before closing
      */
@@ -155,7 +213,7 @@ public class Config {
      * @param filename - the name of the configuration file.
      * @return - a properties object with the configuration file contents.
      */
-    private static Properties loadProperties(String filename, Logger logger) {
+    static Properties loadProperties(String filename, Logger logger) {
 
         Properties properties = new Properties();
 
@@ -197,11 +255,23 @@ public class Config {
         featureSize = Integer.parseInt(properties.getProperty("FeatureSize", "3"));
         featureCount = Integer.parseInt(properties.getProperty("FeatureCount", "4"));
         deckSize = (int) Math.pow(featureSize, featureCount);
+        setFinder = properties.getProperty("SetFinder", "closure").trim().toLowerCase();
+        if (!setFinder.equals("closure") && !setFinder.equals("pruning") && !setFinder.equals("combinatorial"))
+            logger.severe("unknown set finder " + setFinder + ", using the combinatorial set finder.");
+        findSetsParallelism = Integer.parseInt(properties.getProperty("FindSetsParallelism", "1"));
+        findSetsOrdered = Boolean.parseBoolean(properties.getProperty("FindSetsOrdered", "True"));
+        setIndexDirectory = properties.getProperty("SetIndexDirectory", "").trim();
 
         // gameplay settings
+        String seed = properties.getProperty("DeckSeed", "").trim();
+        deckSeed = seed.isEmpty() ? null : Long.parseLong(seed);
+        dealingStrategy = properties.getProperty("DealingStrategy", "random").trim().toLowerCase();
+        if (!dealingStrategy.equals("random") && !dealingStrategy.equals("smart"))
+            logger.severe("unknown dealing strategy " + dealingStrategy + ", dealing random cards.");
         humanPlayers = Integer.parseInt(properties.getProperty("HumanPlayers", "2"));
         computerPlayers = Integer.parseInt(properties.getProperty("ComputerPlayers", "0"));
         players = humanPlayers + computerPlayers;
+        virtualThreads = Boolean.parseBoolean(properties.getProperty("VirtualThreads", "False"));
 
         hints = Boolean.parseBoolean(properties.getProperty("Hints", "False"));
         turnTimeoutMillis = (long) (Double.parseDouble(properties.getProperty("TurnTimeoutSeconds", "60")) * 1000.0);
@@ -209,6 +279,28 @@ public class Config {
         pointFreezeMillis = (long) (Double.parseDouble(properties.getProperty("PointFreezeSeconds", "1")) * 1000.0);
         penaltyFreezeMillis = (long) (Double.parseDouble(properties.getProperty("PenaltyFreezeSeconds", "3")) * 1000.0);
         tableDelayMillis = (long) (Double.parseDouble(properties.getProperty("TableDelaySeconds", "0.1")) * 1000.0);
+        computerStrategies = computerSettings(properties, "ComputerStrategy", "random");
+        computerSkills = new double[players];
+        computerDelayMillis = new long[players];
+        String[] skills = computerSettings(properties, "ComputerSkill", "0.25");
+        String[] delays = computerSettings(properties, "ComputerDelaySeconds", "1");
+        for (int i = 0; i < players; ++i) {
+            if (!computerStrategies[i].contains(".")) // built-in strategy (otherwise a class name)
+                computerStrategies[i] = computerStrategies[i].toLowerCase();
+            if (i >= humanPlayers && !computerStrategies[i].contains(".") && !computerStrategies[i].equals("random")
+                    && !computerStrategies[i].equals("perfect") && !computerStrategies[i].equals("human")) {
+                logger.severe("unknown computer player strategy " + computerStrategies[i] + " for player " + (i + 1) + ", using the random strategy.");
+                computerStrategies[i] = "random";
+            }
+            computerSkills[i] = Double.parseDouble(skills[i]);
+            if (computerSkills[i] < 0 || computerSkills[i] > 1)
+                logger.severe("invalid computer player skill " + computerSkills[i] + " for player " + (i + 1) + ", should be between 0 and 1.");
+            computerDelayMillis[i] = (long) (Double.parseDouble(delays[i]) * 1000.0);
+        }
+        int threads = Integer.parseInt(properties.getProperty("ComputerThreads", "1"));
+        if (threads < 1)
+            logger.severe("invalid number of computer players threads " + threads + ", using 1 thread.");
+        computerThreads = Math.max(1, threads);
         endGamePauseMillies = (long) (Double.parseDouble(properties.getProperty("EndGamePauseSeconds", "5")) * 1000.0);
 
         // ui settings
@@ -244,4 +336,30 @@ public class Config {
     public int[] playerKeys(int player) {
         return playerKeys[player];
     }
+
+    public String computerStrategy(int player) {
+        return computerStrategies[player];
+    }
+
+    public double computerSkill(int player) {
+        return computerSkills[player];
+    }
+
+    public long computerDelayMillis(int player) {
+        return computerDelayMillis[player];
+    }
+
+    /**
+     * Reads a comma separated setting with a value per computer player (the computer players come after the human
+     * players, and the last value is used for the computer players left).
+     *
+     * @return - the value of the setting for every player (the human players get the first value).
+     */
+    private String[] computerSettings(Properties properties, String key, String defaultValue) {
+        String[] values = properties.getProperty(key, defaultValue).split(",");
+        String[] settings = new String[players];
+        for (int i = 0; i < players; ++i)
+            settings[i] = values[Math.min(values.length - 1, Math.max(0, i - humanPlayers))].trim();
+        return settings;
+    }
 }
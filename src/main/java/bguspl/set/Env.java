@@ -1,5 +1,7 @@
 package bguspl.set;
 
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
 import java.util.logging.Logger;
 
 public class Env {
@@ -9,10 +11,35 @@ public class Env {
     public final UserInterface ui;
     public final Util util;
 
+    /**
+     * Creates the dealer, player and computer player threads of the game.
+     */
+    public final ThreadFactory threads;
+
+    /**
+     * The scheduler shared by several games for the timer display and the cards animation (null if the dealer should
+     * start a timer thread of its own).
+     */
+    public final ScheduledExecutorService scheduler;
+
+    /**
+     * The threads shared by several games that run the dealer, players and computer players as tasks (null if the
+     * game runs on threads of its own, created by threads).
+     */
+    public final GameExecutor executor;
+
     public Env(Logger logger, Config config, UserInterface ui, Util util) {
+        this(logger, config, ui, util, GameThreads.factory(config, logger), null, null);
+    }
+
+    public Env(Logger logger, Config config, UserInterface ui, Util util, ThreadFactory threads,
+               ScheduledExecutorService scheduler, GameExecutor executor) {
         this.logger = logger;
         this.config = config;
         this.ui = ui;
         this.util = util;
+        this.threads = threads;
+        this.scheduler = scheduler;
+        this.executor = executor;
     }
 }
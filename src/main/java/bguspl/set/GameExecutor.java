@@ -0,0 +1,20 @@
+package bguspl.set;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs the dealer, player and computer player steps of a game as tasks on threads shared with other games (see
+ * GameRoom), instead of a thread per game loop.
+ */
+public interface GameExecutor {
+
+    /**
+     * Runs a task of the game after a delay.
+     *
+     * @param task  - the task to run.
+     * @param delay - the delay (0 or less runs it as soon as a thread is free).
+     * @param unit  - the unit of the delay.
+     * @return - true iff the task was scheduled, false once the shared threads were shut down.
+     */
+    boolean schedule(Runnable task, long delay, TimeUnit unit);
+}
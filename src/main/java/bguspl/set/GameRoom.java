@@ -0,0 +1,212 @@
+package bguspl.set;
+
+import bguspl.set.ex.Dealer;
+import bguspl.set.ex.Player;
+import bguspl.set.ex.Table;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A single game (dealer, table and players) hosted by a RoomManager, with its own configuration.
+ * The game has no threads of its own: the dealer, the players and the computer players run as tasks on the game
+ * threads the manager shares between all the rooms (so VirtualThreads and ComputerThreads do not apply to rooms), and
+ * the room accounts for the CPU time and the allocations of each of its tasks.
+ */
+public class GameRoom {
+
+    /**
+     * The id of the room in its manager.
+     */
+    public final int id;
+
+    /**
+     * The game environment object.
+     */
+    public final Env env;
+
+    /**
+     * Game entities.
+     */
+    private final Table table;
+    private final Player[] players;
+    private final Dealer dealer;
+
+    /**
+     * The game threads shared by all the rooms of the manager.
+     */
+    private final ScheduledExecutorService executor;
+
+    /**
+     * The thread pressing the keys of every human player (null until it pressed the first one).
+     */
+    private final AtomicReferenceArray<Thread> inputThreads;
+
+    /**
+     * Called once the game is over or the room was closed.
+     */
+    private final Consumer<GameRoom> onClosed;
+    private boolean started;
+    private volatile boolean finished;
+    private final CountDownLatch done;
+
+    /**
+     * The CPU time used and the bytes allocated by the tasks of the room so far (see run).
+     */
+    private final AtomicLong cpuNanos;
+    private final AtomicLong allocatedBytes;
+
+    private static final ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+
+    GameRoom(int id, Logger logger, Config config, UserInterface ui, Util util, ScheduledExecutorService scheduler,
+             ScheduledExecutorService executor, Consumer<GameRoom> onClosed) {
+        this.id = id;
+        this.executor = executor;
+        this.onClosed = onClosed;
+        done = new CountDownLatch(1);
+        cpuNanos = new AtomicLong();
+        allocatedBytes = new AtomicLong();
+        inputThreads = new AtomicReferenceArray<>(config.players);
+        // the thread factory is not used, the game runs as tasks on the executor
+        env = new Env(logger, config, ui, util, Thread::new, scheduler, this::schedule);
+
+        table = new Table(env);
+        players = new Player[config.players];
+        dealer = new Dealer(env, table, players);
+        for (int i = 0; i < players.length; i++)
+            players[i] = new Player(env, dealer, table, i, i < config.humanPlayers);
+    }
+
+    /**
+     * Starts the game.
+     */
+    public synchronized void start() {
+        if (started || finished)
+            return;
+        started = true;
+        if (!schedule(() -> dealer.start(this::release), 0, TimeUnit.MILLISECONDS))
+            release();
+    }
+
+    /**
+     * Passes a key press of a human player to the game.
+     * The key presses of a player are queued for the player without a lock, for a single input thread (see KeyQueue),
+     * so all the key presses of a player must come from one thread (e.g. the thread reading the player's connection):
+     * the first thread pressing a key of the player.
+     *
+     * @param player - the id of the player.
+     * @param slot   - the slot corresponding to the key pressed.
+     * @throws IllegalArgumentException - if the player is a computer player (its own steps press its keys).
+     * @throws IllegalStateException    - if another thread already pressed the keys of the player.
+     */
+    public void keyPressed(int player, int slot) {
+        if (!players[player].isHuman())
+            throw new IllegalArgumentException("player " + player + " is a computer player");
+        Thread current = Thread.currentThread();
+        if (!inputThreads.compareAndSet(player, null, current) && inputThreads.get(player) != current)
+            throw new IllegalStateException("the keys of player " + player + " are pressed by thread "
+                    + inputThreads.get(player).getName() + ", not by " + current.getName());
+        players[player].keyPressed(slot);
+    }
+
+    /**
+     * Ends the game (if it is still on) and releases the room, once the dealer saw it should terminate.
+     * Not to be called from the tasks of a game, which would wait for a task of the dealer on the same threads.
+     */
+    public void close() {
+        synchronized (this) {
+            if (!started) {
+                release();
+                return;
+            }
+        }
+        dealer.terminate();
+        try {
+            done.await();
+        } catch (InterruptedException ignored) {}
+        release();
+    }
+
+    //lets the manager know the room is free, once
+    private synchronized void release() {
+        if (!finished) {
+            finished = true;
+            onClosed.accept(this);
+            done.countDown();
+        }
+    }
+
+    /**
+     * @return - true iff the game is over or the room was closed.
+     */
+    public boolean isFinished() {
+        return finished;
+    }
+
+    public int[] scores() {
+        return Arrays.stream(players).mapToInt(Player::getScore).toArray();
+    }
+
+    /**
+     * The CPU time used by the tasks of the room so far, measured around every task on the (platform) game threads of
+     * the manager, so it does not depend on the thread mode. The timer display and the cards animation run on the
+     * shared scheduler and are not included (see RoomManager::schedulerCpuTimeNanos).
+     *
+     * @return - the CPU time in nanoseconds (0 if the JVM does not measure the CPU time of threads).
+     */
+    public long cpuTimeNanos() {
+        return cpuNanos.get();
+    }
+
+    /**
+     * The bytes allocated by the tasks of the room so far, measured like cpuTimeNanos(). This is the cumulative
+     * allocation (what the room costs the garbage collector), not the memory the room holds at any time.
+     *
+     * @return - the bytes allocated (0 if the JVM does not measure the allocations of threads).
+     */
+    public long allocatedBytes() {
+        return allocatedBytes.get();
+    }
+
+    //runs a task of the game on the shared game threads after a delay, false once they were shut down
+    private boolean schedule(Runnable task, long delay, TimeUnit unit) {
+        try {
+            executor.schedule(() -> run(task), delay, unit);
+            return true;
+        } catch (RejectedExecutionException e) {
+            return false;
+        }
+    }
+
+    //runs a task of the game and adds the CPU time it used and the bytes it allocated to the room
+    private void run(Runnable task) {
+        long cpu = threadBean.getCurrentThreadCpuTime();
+        long allocated = allocatedBytes(Thread.currentThread());
+        try {
+            task.run();
+        } catch (RuntimeException e) {
+            env.logger.log(Level.SEVERE, "a task of room " + id + " failed", e);
+        } finally {
+            if (cpu >= 0)
+                cpuNanos.addAndGet(threadBean.getCurrentThreadCpuTime() - cpu);
+            if (allocated >= 0)
+                allocatedBytes.addAndGet(allocatedBytes(Thread.currentThread()) - allocated);
+        }
+    }
+
+    private static long allocatedBytes(Thread thread) {
+        if (threadBean instanceof com.sun.management.ThreadMXBean)
+            return ((com.sun.management.ThreadMXBean) threadBean).getThreadAllocatedBytes(thread.getId());
+        return -1;
+    }
+}
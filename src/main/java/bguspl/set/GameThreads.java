@@ -0,0 +1,43 @@
+package bguspl.set;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ThreadFactory;
+import java.util.logging.Logger;
+
+/**
+ * Creates the threads of the game: platform threads, or virtual threads when the configuration asks for them and the
+ * JVM has them (Java 21 and later). Virtual threads are looked up by reflection, so the game still builds for Java 8.
+ */
+public class GameThreads {
+
+    private GameThreads() {
+    }
+
+    /**
+     * @param config - the game configuration.
+     * @param logger - reports a missing virtual threads support.
+     * @return - the factory of the dealer, player and computer player threads.
+     */
+    public static ThreadFactory factory(Config config, Logger logger) {
+        if (!config.virtualThreads)
+            return Thread::new;
+        ThreadFactory virtual = virtualThreadFactory();
+        if (virtual != null)
+            return virtual;
+        logger.severe("virtual threads need Java 21 or later (running on " + System.getProperty("java.version")
+                + "), using platform threads.");
+        return Thread::new;
+    }
+
+    //Thread.ofVirtual().factory(), or null if the JVM has no virtual threads
+    private static ThreadFactory virtualThreadFactory() {
+        try {
+            Method ofVirtual = Thread.class.getMethod("ofVirtual");
+            Object builder = ofVirtual.invoke(null);
+            Method factory = ofVirtual.getReturnType().getMethod("factory");
+            return (ThreadFactory) factory.invoke(builder);
+        } catch (ReflectiveOperationException | UnsupportedOperationException e) {
+            return null;
+        }
+    }
+}
@@ -7,9 +7,12 @@ import bguspl.set.ex.Table;
 import java.io.File;
 import java.io.IOException;
 import java.text.SimpleDateFormat;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Calendar;
 import java.util.Date;
+import java.util.List;
+import java.util.Properties;
 import java.util.logging.*;
 
 /**
@@ -23,6 +26,11 @@ public class Main {
     private static boolean xButtonPressed = false;
     private static Logger logger;
 
+    /**
+     * How long a simulated game may take before the simulation fails (a game takes a few milliseconds).
+     */
+    private static final long SIMULATED_GAME_TIMEOUT_MILLIS = 30_000;
+
     public static void xButtonPressed() throws InterruptedException {
         if (logger != null) logger.severe("exit button pressed");
         xButtonPressed = true;
@@ -33,17 +41,39 @@ public class Main {
     /**
      * The game's main function. Creates all data structures and initializes the threads.
      *
-     * @param args - unused.
+     * @param args - "simulate [games]" runs the headless simulation mode, "rooms [rooms]" runs simulated games in
+     *             concurrent rooms, otherwise unused.
      */
     public static void main(String[] args) {
 
         mainThread = Thread.currentThread();
 
+        if (args.length > 0 && args[0].equals("simulate")) {
+            try {
+                simulate(args.length > 1 ? Integer.parseInt(args[1]) : 10);
+            } catch (InterruptedException ignored) {
+            } catch (IllegalStateException e) {
+                e.printStackTrace();
+                System.exit(1);
+            }
+            return;
+        }
+        if (args.length > 0 && args[0].equals("rooms")) {
+            try {
+                rooms(args.length > 1 ? Integer.parseInt(args[1]) : 100);
+            } catch (InterruptedException ignored) {
+            }
+            return;
+        }
+
         // create the game environment objects
         logger = initLogger();
         ThreadLogger.logStart(logger, Thread.currentThread().getName());
         Config config = new Config(logger, "config.properties");
-        Util util = new UtilImpl(config);
+        Util util = new UtilImpl(config, logger);
+        long indexStart = System.currentTimeMillis();
+        int setCount = util.setIndex().setCount();
+        logger.info("set index of " + setCount + " sets built in " + (System.currentTimeMillis() - indexStart) + " ms.");
 
         Player[] players = new Player[config.players];
         UserInterface ui = null;
@@ -83,6 +113,173 @@ public class Main {
         }
     }
 
+    /**
+     * Runs complete games of computer players back to back at full speed (no user interface, no table delays, no
+     * freezes, no computer player delays and a reshuffle as soon as the table has no set), through the same dealer,
+     * player and table code, and prints the throughput and the key press and claim latency percentiles.
+     * The other settings (cards, table size, number of players, dealing strategy...) are read from config.properties.
+     *
+     * @param games - the number of games to run.
+     * @throws IllegalStateException - if a game did not end within SIMULATED_GAME_TIMEOUT_MILLIS.
+     */
+    private static void simulate(int games) throws InterruptedException {
+
+        Logger logger = simulationLogger();
+        Properties properties = simulationProperties(logger);
+        int players = Integer.parseInt(properties.getProperty("ComputerPlayers"));
+        String seed = properties.getProperty("DeckSeed", "").trim();
+
+        Util util = null;
+        long sets = 0;
+        long reshuffles = 0;
+        List<long[]> latencies = new ArrayList<>();
+        List<long[]> keyLatencies = new ArrayList<>();
+        long start = System.nanoTime();
+        for (int game = 0; game < games; ++game) {
+            if (!seed.isEmpty()) properties.setProperty("DeckSeed", String.valueOf(Long.parseLong(seed) + game));
+            Config config = new Config(logger, properties);
+            if (util == null) util = new UtilImpl(config, logger);
+            Env env = new Env(logger, config, new UserInterfaceHeadless(), util);
+
+            Player[] gamePlayers = new Player[config.players];
+            Dealer gameDealer;
+            try {
+                gameDealer = simulateGame(env, gamePlayers, SIMULATED_GAME_TIMEOUT_MILLIS);
+            } catch (IllegalStateException e) {
+                throw new IllegalStateException("game " + game + " (deck seed "
+                        + properties.getProperty("DeckSeed", "none") + "): " + e.getMessage(), e.getCause());
+            }
+            reshuffles += gameDealer.getReshuffles();
+
+            for (Player player : gamePlayers) {
+                sets += player.getScore();
+                latencies.add(player.getClaimLatencies());
+                keyLatencies.add(player.getKeyLatencies());
+            }
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        long[] claims = latencies.stream().flatMapToLong(Arrays::stream).sorted().toArray();
+        long[] keys = keyLatencies.stream().flatMapToLong(Arrays::stream).sorted().toArray();
+        System.out.printf("Simulated %d games of %d computer players in %.2f s: %.2f games/sec, %.1f sets/sec, %.2f reshuffles per game (%s dealing).%n",
+                games, players, seconds, games / seconds, sets / seconds, reshuffles / (double) games,
+                properties.getProperty("DealingStrategy", "random").trim());
+        if (claims.length > 0)
+            System.out.printf("Claim latency (%d claims): p50 %.1f us, p90 %.1f us, p99 %.1f us, max %.1f us.%n",
+                    claims.length, percentile(claims, 50) / 1e3, percentile(claims, 90) / 1e3,
+                    percentile(claims, 99) / 1e3, claims[claims.length - 1] / 1e3);
+        if (keys.length > 0)
+            System.out.printf("Key press to claim latency: p50 %.1f us, p90 %.1f us, p99 %.1f us, max %.1f us.%n",
+                    percentile(keys, 50) / 1e3, percentile(keys, 90) / 1e3,
+                    percentile(keys, 99) / 1e3, keys[keys.length - 1] / 1e3);
+    }
+
+    /**
+     * Runs simulated games (see simulate) in concurrent rooms of a RoomManager, all opened at once on a game thread
+     * per processor, and prints the throughput, the CPU time and the allocations per room and the heap an open room
+     * holds.
+     *
+     * @param count - the number of rooms to run.
+     */
+    private static void rooms(int count) throws InterruptedException {
+
+        Logger logger = simulationLogger();
+        Properties properties = simulationProperties(logger);
+        String seed = properties.getProperty("DeckSeed", "").trim();
+
+        List<GameRoom> rooms = new ArrayList<>();
+        try (RoomManager manager = new RoomManager(logger, 2, Runtime.getRuntime().availableProcessors())) {
+            long heap = usedHeap();
+            for (int room = 0; room < count; ++room) {
+                if (!seed.isEmpty()) properties.setProperty("DeckSeed", String.valueOf(Long.parseLong(seed) + room));
+                rooms.add(manager.open(properties));
+            }
+            heap = usedHeap() - heap;
+            long start = System.nanoTime();
+            rooms.forEach(GameRoom::start);
+            while (manager.roomCount() > 0)
+                Thread.sleep(10);
+            double seconds = (System.nanoTime() - start) / 1e9;
+
+            long sets = rooms.stream().flatMapToInt(room -> Arrays.stream(room.scores())).sum();
+            long[] cpu = rooms.stream().mapToLong(GameRoom::cpuTimeNanos).sorted().toArray();
+            long[] allocated = rooms.stream().mapToLong(GameRoom::allocatedBytes).sorted().toArray();
+            System.out.printf("Ran %d rooms of %s computer players on %d game threads in %.2f s: %.2f games/sec, %.1f sets/sec.%n",
+                    count, properties.getProperty("ComputerPlayers"), manager.gameThreads(), seconds,
+                    count / seconds, sets / seconds);
+            System.out.printf("CPU per room: p50 %.1f ms, max %.1f ms (shared scheduler: %.1f ms in total).%n",
+                    percentile(cpu, 50) / 1e6, cpu[cpu.length - 1] / 1e6, manager.schedulerCpuTimeNanos() / 1e6);
+            System.out.printf("Allocated per room (in total, not held): p50 %.1f MB, max %.1f MB. Heap held per open room: %.1f KB.%n",
+                    percentile(allocated, 50) / 1e6, allocated[allocated.length - 1] / 1e6, heap / 1e3 / count);
+        }
+    }
+
+    //the heap in use after a garbage collection (an estimate, the collection is only requested)
+    private static long usedHeap() {
+        System.gc();
+        Runtime runtime = Runtime.getRuntime();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    /**
+     * Runs a game of computer players (see simulate) to the end on a dealer thread.
+     *
+     * @param env           - the game environment (without a timer or a game executor shared with other games).
+     * @param players       - filled with the players of the game, which record their claim latencies.
+     * @param timeoutMillis - how long the game may take.
+     * @return - the dealer of the game.
+     * @throws IllegalStateException - if the game did not end in time (it is terminated first, and the cause holds
+     *                               where the dealer thread was).
+     */
+    static Dealer simulateGame(Env env, Player[] players, long timeoutMillis) throws InterruptedException {
+        Table table = new Table(env);
+        Dealer dealer = new Dealer(env, table, players);
+        for (int i = 0; i < players.length; i++) {
+            players[i] = new Player(env, dealer, table, i, false);
+            players[i].recordClaimLatencies();
+        }
+        Thread dealerThread = new Thread(dealer, "dealer");
+        dealerThread.start();
+        dealerThread.join(timeoutMillis);
+        if (dealerThread.isAlive()) {
+            Throwable stuck = new Throwable("the dealer thread was here");
+            stuck.setStackTrace(dealerThread.getStackTrace());
+            dealer.terminate();
+            dealerThread.join(timeoutMillis);
+            throw new IllegalStateException("the game did not end in " + timeoutMillis + " ms", stuck);
+        }
+        return dealer;
+    }
+
+    //the logger of the simulation modes (logging off)
+    private static Logger simulationLogger() {
+        Logger logger = Logger.getLogger("SetGameSimulation");
+        logger.setUseParentHandlers(false);
+        return logger;
+    }
+
+    //the settings of config.properties with all the players as computer players and no delays
+    private static Properties simulationProperties(Logger logger) {
+        Properties properties = Config.loadProperties("config.properties", logger);
+        int players = Integer.parseInt(properties.getProperty("HumanPlayers", "2"))
+                + Integer.parseInt(properties.getProperty("ComputerPlayers", "0"));
+        properties.setProperty("LogLevel", "OFF");
+        properties.setProperty("HumanPlayers", "0");
+        properties.setProperty("ComputerPlayers", String.valueOf(Math.max(1, players)));
+        properties.setProperty("Hints", "False");
+        properties.setProperty("TurnTimeoutSeconds", "0");
+        properties.setProperty("TableDelaySeconds", "0");
+        properties.setProperty("PointFreezeSeconds", "0");
+        properties.setProperty("PenaltyFreezeSeconds", "0");
+        properties.setProperty("ComputerDelaySeconds", "0");
+        properties.setProperty("EndGamePauseSeconds", "0");
+        return properties;
+    }
+
+    private static long percentile(long[] sorted, int percent) {
+        return sorted[Math.min(sorted.length - 1, (int) ((long) sorted.length * percent / 100))];
+    }
+
     private static Logger initLogger() {
 
         //just to make our log file nicer :)
@@ -0,0 +1,172 @@
+package bguspl.set;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+/**
+ * An implementation of the SetIndex interface kept in a binary file and mapped read-only into memory, so that it is
+ * generated once per deck and shared (through the page cache) by all the games and processes using the same deck.
+ * <p>
+ * The file holds little-endian ints: a header (magic, version, featureSize, featureCount, deckSize, setCount), then
+ * the offsets of the sets of every card (deckSize + 1 ints), the set ids of every card and the cards of every set
+ * (setCount * featureSize ints each), laid out as in SetIndexImpl.
+ */
+public class MappedSetIndex implements SetIndex {
+
+    private static final int MAGIC = 0x53455453; // "SETS"
+    private static final int VERSION = 1;
+    private static final int HEADER_INTS = 6;
+
+    private final int setSize;
+    private final int setCount;
+
+    /**
+     * Views of the mapped file (only absolute reads are used, so they can be shared by all threads).
+     */
+    private final IntBuffer offsets;
+    private final IntBuffer cardSets;
+    private final IntBuffer members;
+
+    private MappedSetIndex(Path file, Config config) throws IOException {
+        MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        IntBuffer ints = buffer.order(ByteOrder.LITTLE_ENDIAN).asIntBuffer();
+
+        setSize = config.featureSize;
+        setCount = ints.get(5);
+        offsets = slice(ints, HEADER_INTS, config.deckSize + 1);
+        cardSets = slice(ints, HEADER_INTS + config.deckSize + 1, setCount * setSize);
+        members = slice(ints, HEADER_INTS + config.deckSize + 1 + setCount * setSize, setCount * setSize);
+    }
+
+    /**
+     * Opens the index file of the deck, first generating it if it is missing or does not match the deck (or the
+     * current file version).
+     *
+     * @param file   - the index file.
+     * @param config - the game configuration.
+     * @param util   - used to enumerate the legal sets when the file is generated.
+     * @return - the mapped set index.
+     * @throws IOException - if the file can neither be read nor generated.
+     */
+    public static MappedSetIndex open(Path file, Config config, Util util) throws IOException {
+        if (!isValid(file, config))
+            generate(file, config, util);
+        return new MappedSetIndex(file, config);
+    }
+
+    /**
+     * Checks the header and the size of an index file against the deck.
+     */
+    private static boolean isValid(Path file, Config config) throws IOException {
+        if (!Files.isRegularFile(file)) return false;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_INTS * Integer.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            while (header.hasRemaining() && channel.read(header) >= 0) ;
+            if (header.hasRemaining()) return false;
+            header.flip();
+            int[] fields = new int[HEADER_INTS];
+            header.asIntBuffer().get(fields);
+            return fields[0] == MAGIC && fields[1] == VERSION && fields[2] == config.featureSize
+                    && fields[3] == config.featureCount && fields[4] == config.deckSize && fields[5] >= 0
+                    && channel.size() == fileSize(config, fields[5]);
+        }
+    }
+
+    private static long fileSize(Config config, int setCount) {
+        return Integer.BYTES * (HEADER_INTS + config.deckSize + 1 + 2L * setCount * config.featureSize);
+    }
+
+    /**
+     * Generates the index file without keeping the sets on the heap: a first pass over the sets counts the sets of
+     * every card and a second one writes them straight into the mapped file. The file is written under a temporary
+     * name and then moved into place, so other processes never see a partial file.
+     */
+    private static void generate(Path file, Config config, Util util) throws IOException {
+        int[] deck = IntStream.range(0, config.deckSize).toArray();
+        int[] offsets = new int[config.deckSize + 1];
+        util.streamSets(deck).forEach(cards -> {
+            for (int card : cards)
+                ++offsets[card + 1];
+        });
+        for (int card = 0; card < config.deckSize; ++card)
+            offsets[card + 1] += offsets[card];
+        int setCount = offsets[config.deckSize] / config.featureSize;
+
+        long size = fileSize(config, setCount);
+        if (size > Integer.MAX_VALUE)
+            throw new IOException("set index of " + setCount + " sets is too large to map");
+
+        Path directory = file.toAbsolutePath().getParent();
+        Files.createDirectories(directory);
+        Path temp = Files.createTempFile(directory, file.getFileName().toString(), ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+                IntBuffer ints = buffer.order(ByteOrder.LITTLE_ENDIAN).asIntBuffer();
+                ints.put(new int[]{MAGIC, VERSION, config.featureSize, config.featureCount, config.deckSize, setCount});
+                ints.put(offsets);
+
+                int cardSets = HEADER_INTS + config.deckSize + 1;
+                int members = cardSets + setCount * config.featureSize;
+                int[] next = Arrays.copyOf(offsets, config.deckSize);
+                int[] set = {0};
+                util.streamSets(deck).forEach(cards -> {
+                    for (int i = 0; i < cards.length; ++i) {
+                        ints.put(members + set[0] * config.featureSize + i, cards[i]);
+                        ints.put(cardSets + next[cards[i]]++, set[0]);
+                    }
+                    ++set[0];
+                });
+                buffer.force();
+            }
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    private static IntBuffer slice(IntBuffer ints, int from, int length) {
+        IntBuffer view = ints.duplicate();
+        view.position(from);
+        view.limit(from + length);
+        return view.slice();
+    }
+
+    @Override
+    public int setCount() {
+        return setCount;
+    }
+
+    @Override
+    public int setSize() {
+        return setSize;
+    }
+
+    @Override
+    public int card(int set, int index) {
+        return members.get(set * setSize + index);
+    }
+
+    @Override
+    public int setsOf(int card) {
+        return offsets.get(card + 1) - offsets.get(card);
+    }
+
+    @Override
+    public int setOf(int card, int index) {
+        return cardSets.get(offsets.get(card) + index);
+    }
+}
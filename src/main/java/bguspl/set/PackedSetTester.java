@@ -0,0 +1,22 @@
+package bguspl.set;
+
+/**
+ * Checks many groups of three cards by their packed features (see UtilImpl), several groups per instruction.
+ */
+interface PackedSetTester {
+
+    /**
+     * Sets bit i of words iff group i (a[i], b[i] and c[i]) forms a legal set, for the groups from 0 up to the
+     * returned bound. The rest of the groups are left to the caller.
+     *
+     * @param packed      - the packed features of every card.
+     * @param fieldValues - all value bits of all fields.
+     * @param fieldGuards - the guard bits of all fields.
+     * @param a           - the first card of every group.
+     * @param b           - the second card of every group.
+     * @param c           - the third card of every group.
+     * @param words       - the bitmap of the legal groups (all zero when called).
+     * @return - the number of groups checked.
+     */
+    int testSets(long[] packed, long fieldValues, long fieldGuards, int[] a, int[] b, int[] c, long[] words);
+}
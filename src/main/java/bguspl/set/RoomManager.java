@@ -0,0 +1,161 @@
+package bguspl.set;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+
+/**
+ * Hosts many independent games (rooms) in one process. Rooms are opened and closed on demand, each with its own
+ * configuration, and share:
+ * <ul>
+ *     <li>a fixed pool of scheduler threads for the timer display and the cards animation of all the rooms,</li>
+ *     <li>a fixed pool of game threads the dealers, players and computer players of all the rooms run on as tasks
+ *     (so a room costs no threads, however many players it has),</li>
+ *     <li>one Util (and so one set index) per deck and set finder settings.</li>
+ * </ul>
+ */
+public class RoomManager implements AutoCloseable {
+
+    private final Logger logger;
+
+    /**
+     * The scheduler threads shared by all the rooms.
+     */
+    private final ScheduledExecutorService scheduler;
+    private final List<Thread> schedulerThreads;
+
+    /**
+     * The game threads shared by all the rooms.
+     */
+    private final ScheduledExecutorService executor;
+    private final int gameThreads;
+    private volatile boolean closed;
+
+    private final Map<Integer, GameRoom> rooms;
+    private final Map<String, Util> utils;
+    private final AtomicInteger nextId;
+
+    private static final ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+
+    /**
+     * @param logger           - the logger of the rooms.
+     * @param schedulerThreads - the number of scheduler threads shared by all the rooms.
+     * @param gameThreads      - the number of game threads shared by all the rooms.
+     */
+    public RoomManager(Logger logger, int schedulerThreads, int gameThreads) {
+        this.logger = logger;
+        this.schedulerThreads = new CopyOnWriteArrayList<>();
+        this.gameThreads = gameThreads;
+        ThreadFactory timers = daemonThreads("rooms-timer-");
+        scheduler = Executors.newScheduledThreadPool(schedulerThreads, task -> {
+            Thread thread = timers.newThread(task);
+            this.schedulerThreads.add(thread);
+            return thread;
+        });
+        executor = Executors.newScheduledThreadPool(gameThreads, daemonThreads("rooms-game-"));
+        rooms = new ConcurrentHashMap<>();
+        utils = new ConcurrentHashMap<>();
+        nextId = new AtomicInteger();
+    }
+
+    private static ThreadFactory daemonThreads(String prefix) {
+        AtomicInteger count = new AtomicInteger();
+        return task -> {
+            Thread thread = new Thread(task, prefix + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    /**
+     * Opens a room without a user interface (human players play through GameRoom::keyPressed, each player
+     * from a single thread).
+     *
+     * @param properties - the configuration of the game.
+     * @return - the room, not started yet.
+     * @throws IllegalStateException - if the manager was closed.
+     */
+    public GameRoom open(Properties properties) {
+        return open(properties, new UserInterfaceHeadless());
+    }
+
+    /**
+     * Opens a room.
+     *
+     * @param properties - the configuration of the game.
+     * @param ui         - the user interface of the game.
+     * @return - the room, not started yet.
+     * @throws IllegalStateException - if the manager was closed.
+     */
+    public GameRoom open(Properties properties, UserInterface ui) {
+        if (closed)
+            throw new IllegalStateException("the room manager was closed");
+        Config config = new Config(logger, properties);
+        Util util = utils.computeIfAbsent(utilKey(config), key -> new UtilImpl(config, logger));
+        GameRoom room = new GameRoom(nextId.incrementAndGet(), logger, config, ui, util, scheduler, executor,
+                this::closed);
+        rooms.put(room.id, room);
+        return room;
+    }
+
+    //rooms with the same deck and set finder settings share a Util
+    private static String utilKey(Config config) {
+        return config.featureSize + "x" + config.featureCount + "/" + config.setFinder + "/" + config.findSetsParallelism
+                + "/" + config.findSetsOrdered + "/" + config.setIndexDirectory;
+    }
+
+    private void closed(GameRoom room) {
+        rooms.remove(room.id);
+    }
+
+    /**
+     * @return - the rooms that are open.
+     */
+    public Collection<GameRoom> rooms() {
+        return new ArrayList<>(rooms.values());
+    }
+
+    public int roomCount() {
+        return rooms.size();
+    }
+
+    /**
+     * @return - the number of game threads shared by all the rooms.
+     */
+    public int gameThreads() {
+        return gameThreads;
+    }
+
+    /**
+     * @return - the CPU time used by the shared scheduler threads so far, in nanoseconds.
+     */
+    public long schedulerCpuTimeNanos() {
+        long nanos = 0;
+        for (Thread thread : schedulerThreads)
+            nanos += Math.max(0, threadBean.getThreadCpuTime(thread.getId()));
+        return nanos;
+    }
+
+    /**
+     * Closes all the rooms and stops the shared threads.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        for (GameRoom room : rooms())
+            room.close();
+        executor.shutdownNow();
+        scheduler.shutdownNow();
+    }
+}
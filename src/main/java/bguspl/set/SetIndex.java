@@ -0,0 +1,83 @@
+package bguspl.set;
+
+import java.util.BitSet;
+import java.util.LinkedList;
+import java.util.List;
+
+/**
+ * An index of all the legal sets of the deck, listing for every card the sets it participates in.
+ * The sets are numbered in lexicographic order of their (ascending) card ids.
+ */
+public interface SetIndex {
+
+    /**
+     * @return - the number of legal sets in the deck.
+     */
+    int setCount();
+
+    /**
+     * @return - the number of cards in a set.
+     */
+    int setSize();
+
+    /**
+     * Returns a card of a set.
+     *
+     * @param set   - the set id (between 0 and setCount() - 1).
+     * @param index - the position of the card in the set (between 0 and config.featureSize - 1).
+     * @return - the card id (the cards of a set are in ascending order).
+     */
+    int card(int set, int index);
+
+    /**
+     * @param card - the card id.
+     * @return - the number of sets the card participates in.
+     */
+    int setsOf(int card);
+
+    /**
+     * Returns one of the sets a card participates in.
+     *
+     * @param card  - the card id.
+     * @param index - the position of the set in the card's list (between 0 and setsOf(card) - 1).
+     * @return - the set id (the sets of a card are in ascending order).
+     */
+    int setOf(int card, int index);
+
+    /**
+     * Checks if all the cards of a set are present.
+     *
+     * @param set   - the set id.
+     * @param cards - a bitmap of the present card ids.
+     * @return - true iff every card of the set is present.
+     */
+    default boolean isPresent(int set, BitSet cards) {
+        for (int i = 0; i < setSize(); ++i)
+            if (!cards.get(card(set, i))) return false;
+        return true;
+    }
+
+    /**
+     * Finds up to count sets all of whose cards are present, in lexicographic order.
+     *
+     * @param cards - a bitmap of the present card ids.
+     * @param count - the maximum number of sets to find.
+     * @return - a list of up to count integer arrays, each one contains the card ids of a legal set.
+     */
+    default List<int[]> findSets(BitSet cards, int count) {
+        LinkedList<int[]> sets = new LinkedList<>();
+        for (int card = cards.nextSetBit(0); card >= 0; card = cards.nextSetBit(card + 1))
+            for (int i = 0; i < setsOf(card); ++i) {
+                int set = setOf(card, i);
+                // every set is reported once, by its smallest card
+                if (card(set, 0) == card && isPresent(set, cards)) {
+                    int[] setCards = new int[setSize()];
+                    for (int j = 0; j < setCards.length; ++j)
+                        setCards[j] = card(set, j);
+                    sets.add(setCards);
+                    if (sets.size() >= count) return sets;
+                }
+            }
+        return sets;
+    }
+}
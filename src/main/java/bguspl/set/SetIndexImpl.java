@@ -0,0 +1,79 @@
+package bguspl.set;
+
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+/**
+ * The implementation of the SetIndex interface, kept in memory as flat primitive arrays.
+ */
+public class SetIndexImpl implements SetIndex {
+
+    /**
+     * The number of cards in a set.
+     */
+    private final int setSize;
+
+    /**
+     * The cards of all sets: the cards of set s are at [s * setSize, (s + 1) * setSize).
+     */
+    private final int[] members;
+
+    /**
+     * The sets of card c are cardSets[offsets[c]] to cardSets[offsets[c + 1] - 1].
+     */
+    private final int[] offsets;
+    private final int[] cardSets;
+
+    /**
+     * Builds the index of the full deck (this is done once, the sets of a deck never change).
+     *
+     * @param config - the game configuration.
+     * @param util   - used to enumerate the legal sets.
+     */
+    public SetIndexImpl(Config config, Util util) {
+        setSize = config.featureSize;
+        int[] deck = IntStream.range(0, config.deckSize).toArray();
+
+        members = new int[util.countSets(deck) * setSize];
+        offsets = new int[config.deckSize + 1];
+        int[] set = {0};
+        util.streamSets(deck).forEach(cards -> {
+            System.arraycopy(cards, 0, members, set[0]++ * setSize, setSize);
+            for (int card : cards)
+                ++offsets[card + 1];
+        });
+        for (int card = 0; card < config.deckSize; ++card)
+            offsets[card + 1] += offsets[card];
+
+        // the sets are added in ascending order, so every card's list is sorted
+        cardSets = new int[members.length];
+        int[] next = Arrays.copyOf(offsets, config.deckSize);
+        for (int i = 0; i < members.length; ++i)
+            cardSets[next[members[i]]++] = i / setSize;
+    }
+
+    @Override
+    public int setCount() {
+        return members.length / setSize;
+    }
+
+    @Override
+    public int setSize() {
+        return setSize;
+    }
+
+    @Override
+    public int card(int set, int index) {
+        return members[set * setSize + index];
+    }
+
+    @Override
+    public int setsOf(int card) {
+        return offsets[card + 1] - offsets[card];
+    }
+
+    @Override
+    public int setOf(int card, int index) {
+        return cardSets[offsets[card] + index];
+    }
+}
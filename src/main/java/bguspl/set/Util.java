@@ -1,6 +1,8 @@
 package bguspl.set;
 
+import java.util.BitSet;
 import java.util.List;
+import java.util.stream.Stream;
 
 /**
  * An interface for general utilities provided for convenience.
@@ -31,15 +33,77 @@ public interface Util {
      */
     boolean testSet(int[] cards);
 
+    /**
+     * Checks if three cards form a legal set, without building an array (see testSet(int[])).
+     *
+     * @param card1 - the first card id.
+     * @param card2 - the second card id.
+     * @param card3 - the third card id.
+     * @return - true iff the three cards form a legal set.
+     */
+    boolean testSet(int card1, int card2, int card3);
+
+    /**
+     * Checks many groups of three cards at once, group i being a[i], b[i] and c[i] (see testSet(int, int, int)).
+     *
+     * @param a - the first card of every group.
+     * @param b - the second card of every group.
+     * @param c - the third card of every group.
+     * @return - a bitmap whose bit i is set iff group i forms a legal set.
+     */
+    BitSet testSets(int[] a, int[] b, int[] c);
+
     /**
      * Finds and returns up to count sets in the given collection of cards.
+     * The sets are ordered lexicographically by the positions of their cards in the collection.
      *
      * @param deck  - a collection of cards (may not include null objects).
-     * @param count - the maximum number of sets to find.
+     * @param count - the maximum number of sets to find (a count below 1 finds one set).
      * @return - a list of up to count integer arrays, each one contains the card ids of a legal set.
      */
     List<int[]> findSets(List<Integer> deck, int count);
 
+    /**
+     * Finds and returns up to count sets in the given array of cards (see findSets(List, int)).
+     *
+     * @param cards - an array of card ids.
+     * @param count - the maximum number of sets to find.
+     * @return - a list of up to count integer arrays, each one contains the card ids of a legal set.
+     */
+    List<int[]> findSets(int[] cards, int count);
+
+    /**
+     * Returns a lazy stream of the sets in the given array of cards, in the same order as findSets. The cards are
+     * searched only as far as the stream is consumed.
+     *
+     * @param cards - an array of card ids.
+     * @return - a stream of integer arrays, each one contains the card ids of a legal set.
+     */
+    Stream<int[]> streamSets(int[] cards);
+
+    /**
+     * Checks if the given array of cards contains a legal set, without building any set array.
+     *
+     * @param cards - an array of card ids.
+     * @return - true iff the cards contain at least one legal set.
+     */
+    boolean hasSet(int[] cards);
+
+    /**
+     * Counts the legal sets in the given array of cards, without building any set array.
+     *
+     * @param cards - an array of card ids.
+     * @return - the number of legal sets in the cards.
+     */
+    int countSets(int[] cards);
+
+    /**
+     * Returns the index of all the legal sets of the deck (it is built once, on first use, and shared afterwards).
+     *
+     * @return - the set index.
+     */
+    SetIndex setIndex();
+
     /**
      * Spin a random number of times (for debugging/testing).
      */
@@ -1,10 +1,25 @@
 package bguspl.set;
 
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.BitSet;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Consumer;
+import java.util.logging.Logger;
 import java.util.stream.IntStream;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * The implementation of the UserInterface interface.
@@ -13,13 +28,115 @@ public class UtilImpl implements Util {
 
     private final Config config;
 
+    /**
+     * The logger of configuration problems found when the set index is first used.
+     */
+    private final Logger logger;
+
+    /**
+     * The features of every card packed into a long (null if they do not fit). Each feature is a field of
+     * featureSize + 1 bits: the bit of the feature's value is set (one-hot) and the top bit is a guard bit for carries.
+     */
+    private final long[] packed;
+
+    /**
+     * All value bits of all fields (i.e. a card having every value in every feature).
+     */
+    private final long fieldValues;
+
+    /**
+     * The guard bits of all fields.
+     */
+    private final long fieldGuards;
+
+    /**
+     * The Vector API batch check (null when this build or the JVM does not have it).
+     */
+    private static final PackedSetTester VECTOR_TESTER = vectorTester();
+
+    /**
+     * The features of every card: the features of card c are at [c * featureCount, (c + 1) * featureCount).
+     */
+    private final int[] features;
+
+    /**
+     * True iff findSets uses the pruning search (when it does not use the closure search).
+     */
+    private final boolean pruning;
+
+    /**
+     * The index of all legal sets of the deck (null until first used).
+     */
+    private volatile SetIndex setIndex;
+
+    /**
+     * The number of threads findSets searches with, and their pool (null until first used).
+     */
+    private final int parallelism;
+    private volatile ForkJoinPool pool;
+
+    /**
+     * Smaller collections of cards are always searched sequentially.
+     */
+    private static final int PARALLEL_MIN_CARDS = 64;
+
+    /**
+     * The number of first card positions a parallel task searches without splitting.
+     */
+    private static final int PARALLEL_GRAIN = 4;
+
     public UtilImpl(Config config) {
+        this(config, Logger.getLogger(UtilImpl.class.getName()));
+    }
+
+    public UtilImpl(Config config, Logger logger) {
         this.config = config;
+        this.logger = logger;
+        features = new int[config.deckSize * config.featureCount];
+        for (int card = 0; card < config.deckSize; ++card)
+            cardToFeatures(card, features, card * config.featureCount);
+        pruning = config.featureSize >= 2 && (config.setFinder.equals("pruning") || config.setFinder.equals("closure"));
+        parallelism = config.findSetsParallelism > 0 ? config.findSetsParallelism : Runtime.getRuntime().availableProcessors();
+
+        int fieldWidth = config.featureSize + 1;
+        if (config.featureSize >= 2 && fieldWidth * config.featureCount <= Long.SIZE) {
+            long values = 0, guards = 0;
+            for (int i = 0; i < config.featureCount; ++i) {
+                values |= ((1L << config.featureSize) - 1) << (i * fieldWidth);
+                guards |= 1L << (i * fieldWidth + config.featureSize);
+            }
+            fieldValues = values;
+            fieldGuards = guards;
+            packed = new long[config.deckSize];
+            for (int card = 0; card < config.deckSize; ++card) {
+                int rest = card;
+                for (int i = 0; i < config.featureCount; ++i) {
+                    packed[card] |= 1L << (i * fieldWidth + rest % config.featureSize);
+                    rest /= config.featureSize;
+                }
+            }
+        } else {
+            packed = null;
+            fieldValues = fieldGuards = 0;
+        }
+    }
+
+    //a VectorSetTester, or null unless built by the jdk21 profile and run with the jdk.incubator.vector module
+    private static PackedSetTester vectorTester() {
+        try {
+            return (PackedSetTester) Class.forName("bguspl.set.VectorSetTester").getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException | LinkageError e) {
+            return null;
+        }
     }
 
     private void cardToFeatures(int card, int[] features) {
+        cardToFeatures(card, features, 0);
+    }
+
+    private void cardToFeatures(int card, int[] features, int offset) {
         for (int i = config.featureCount - 1; i >= 0; --i) {
-            features[i] = card % config.featureSize;
+            features[offset + i] = card % config.featureSize;
             card /= config.featureSize;
         }
     }
@@ -38,8 +155,86 @@ public class UtilImpl implements Util {
         return features;
     }
 
+    /**
+     * Checks the packed features of a group of featureSize cards: in every field either all cards share a value
+     * (the AND of the fields is non-zero) or all values appear (the OR of the fields is full).
+     * Adding the value bits to a field carries into its guard bit iff the field is non-zero.
+     *
+     * @param and - the AND of the packed cards.
+     * @param or  - the OR of the packed cards.
+     * @return - true iff the cards form a legal set.
+     */
+    private boolean isSet(long and, long or) {
+        long sameSame = (and + fieldValues) & fieldGuards;
+        long missing = ((or ^ fieldValues) + fieldValues) & fieldGuards;
+        return (missing & ~sameSame) == 0;
+    }
+
+    @Override
+    public boolean testSet(int card1, int card2, int card3) {
+        if (packed == null || config.featureSize != 3)
+            return testFeatures(card1, card2, card3);
+        long a = packed[card1], b = packed[card2], c = packed[card3];
+        return isSet(a & b & c, a | b | c);
+    }
+
+    /**
+     * Checks a group of three cards a feature at a time, straight from the card ids (the features of a card are its
+     * digits in base featureSize), so nothing is allocated. The same rule as testSet(int[]) for any feature size.
+     */
+    private boolean testFeatures(int card1, int card2, int card3) {
+        for (int i = 0; i < config.featureCount; ++i) {
+            int x = card1 % config.featureSize, y = card2 % config.featureSize, z = card3 % config.featureSize;
+            boolean sameSame = x == y && y == z;
+            boolean butDifferent = x != y && x != z && y != z;
+            if (sameSame == butDifferent) return false;
+            card1 /= config.featureSize;
+            card2 /= config.featureSize;
+            card3 /= config.featureSize;
+        }
+        return true;
+    }
+
+    @Override
+    public BitSet testSets(int[] a, int[] b, int[] c) {
+        int n = a.length;
+        long[] words = new long[(n + Long.SIZE - 1) / Long.SIZE];
+        if (packed == null || config.featureSize != 3) {
+            for (int i = 0; i < n; ++i)
+                if (testFeatures(a[i], b[i], c[i])) words[i / Long.SIZE] |= 1L << i;
+            return BitSet.valueOf(words);
+        }
+
+        // the Vector API checks what it can, the rest of the groups are checked a word (64 groups) at a time without
+        // branches, building every bitmap word in a register before storing it
+        int checked = VECTOR_TESTER == null ? 0
+                : VECTOR_TESTER.testSets(packed, fieldValues, fieldGuards, a, b, c, words);
+        for (int word = checked / Long.SIZE; word < words.length; ++word) {
+            int from = Math.max(checked, word * Long.SIZE), to = Math.min(n, word * Long.SIZE + Long.SIZE);
+            long legal = words[word];
+            for (int i = from; i < to; ++i) {
+                long x = packed[a[i]], y = packed[b[i]], z = packed[c[i]];
+                long sameSame = ((x & y & z) + fieldValues) & fieldGuards;
+                long missing = (((x | y | z) ^ fieldValues) + fieldValues) & fieldGuards;
+                long illegal = missing & ~sameSame;
+                legal |= (((illegal | -illegal) >>> (Long.SIZE - 1)) ^ 1) << i;
+            }
+            words[word] = legal;
+        }
+        return BitSet.valueOf(words);
+    }
+
     @Override
     public boolean testSet(int[] cards) {
+        if (packed != null && cards.length == config.featureSize) {
+            long and = -1L, or = 0L;
+            for (int card : cards) {
+                and &= packed[card];
+                or |= packed[card];
+            }
+            return isSet(and, or);
+        }
+
         int[][] features = cardsToFeatures(Arrays.copyOf(cards, cards.length));
         for (int i = 0; i < config.featureCount; ++i) {
             boolean sameSame = true, butDifferent = true;
@@ -64,30 +259,385 @@ public class UtilImpl implements Util {
         return true;
     }
 
+    /**
+     * Receives the sets found by a search.
+     */
+    private interface SetSink {
+
+        /**
+         * @param cards       - the searched cards.
+         * @param combination - the positions in cards of the cards of the set found (ascending).
+         * @return - true iff the search should stop.
+         */
+        boolean found(int[] cards, int[] combination);
+    }
+
+    /**
+     * A sink adding up to count sets (as ascending card ids) to a list.
+     */
+    private static SetSink collect(List<int[]> sets, int count) {
+        return (cards, combination) -> {
+            int[] set = new int[combination.length];
+            for (int i = 0; i < set.length; ++i)
+                set[i] = cards[combination[i]];
+            Arrays.sort(set);
+            sets.add(set);
+            return sets.size() >= count;
+        };
+    }
+
     @Override
     public List<int[]> findSets(List<Integer> deck, int count) {
+        return findSets(deck.stream().mapToInt(Integer::intValue).toArray(), count);
+    }
+
+    @Override
+    public List<int[]> findSets(int[] cards, int count) {
+        // like the original combinatorial search, which checked the count only after adding a set
+        count = Math.max(count, 1);
+        int[] position = positions(cards);
+        if (parallelism > 1 && cards.length >= PARALLEL_MIN_CARDS)
+            return findSetsParallel(cards, position, count);
+
         LinkedList<int[]> sets = new LinkedList<>();
-        int n = deck.size();
+        search(cards, position, collect(sets, count));
+        return sets;
+    }
+
+    @Override
+    public Stream<int[]> streamSets(int[] cards) {
+        int[] position = positions(cards);
+        Spliterator<int[]> sets = new Spliterators.AbstractSpliterator<int[]>(Long.MAX_VALUE,
+                Spliterator.ORDERED | Spliterator.NONNULL) {
+
+            private int first = 0;
+            private final List<int[]> pending = new LinkedList<>();
+
+            @Override
+            public boolean tryAdvance(Consumer<? super int[]> action) {
+                // search one first card position at a time, only when the sets found so far were consumed
+                while (pending.isEmpty() && first < cards.length)
+                    findSetsFrom(cards, position, first++, collect(pending, Integer.MAX_VALUE));
+                if (pending.isEmpty()) return false;
+                action.accept(pending.remove(0));
+                return true;
+            }
+        };
+        return StreamSupport.stream(sets, false);
+    }
+
+    @Override
+    public boolean hasSet(int[] cards) {
+        return search(cards, positions(cards), (searched, combination) -> true);
+    }
+
+    @Override
+    public int countSets(int[] cards) {
+        int[] count = {0};
+        search(cards, positions(cards), (searched, combination) -> {
+            ++count[0];
+            return false;
+        });
+        return count[0];
+    }
+
+    /**
+     * Returns the position of every card id in cards when the closure search is used (null otherwise).
+     */
+    private int[] positions(int[] cards) {
+        if (config.featureSize != 3 || !config.setFinder.equals("closure")) return null;
+        int[] position = new int[config.deckSize];
+        Arrays.fill(position, -1);
+        for (int i = 0; i < cards.length; ++i)
+            position[cards[i]] = i;
+        return position;
+    }
+
+    /**
+     * Passes all sets of the cards to the sink, in lexicographic order of the positions, until it says to stop.
+     *
+     * @return - true iff the sink stopped the search.
+     */
+    private boolean search(int[] cards, int[] position, SetSink sink) {
+        for (int first = 0; first < cards.length; ++first)
+            if (findSetsFrom(cards, position, first, sink)) return true;
+        return false;
+    }
+
+    /**
+     * Passes the sets whose first card (by position) is cards[first] to the sink, in lexicographic order of the
+     * positions, until it says to stop.
+     *
+     * @param position - the position of every card id in cards for the closure search (null for the other ones).
+     * @return - true iff the sink stopped the search.
+     */
+    private boolean findSetsFrom(int[] cards, int[] position, int first, SetSink sink) {
+        if (position != null)
+            return findSetsClosure(cards, position, first, sink);
+        else if (pruning)
+            return findSetsPruning(cards, first, sink);
+        else
+            return findSetsCombinatorial(cards, first, sink);
+    }
+
+    /**
+     * Returns the only card that completes the given pair to a legal set (valid only when featureSize is 3).
+     * In each feature the third value is the one making the three values all-same or all-different.
+     */
+    private int thirdCard(int first, int second) {
+        int third = 0;
+        for (int i = 0, weight = 1; i < config.featureCount; ++i, weight *= 3) {
+            third += ((6 - first % 3 - second % 3) % 3) * weight;
+            first /= 3;
+            second /= 3;
+        }
+        return third;
+    }
+
+    /**
+     * Finds sets by closing every pair of cards with its unique third card and looking it up by position, in O(n)
+     * per first card. The sets come in the same order as in the combinatorial search.
+     */
+    private boolean findSetsClosure(int[] cards, int[] position, int first, SetSink sink) {
+        int[] combination = {first, 0, 0};
+        for (int j = first + 1; j < cards.length; ++j) {
+            int k = position[thirdCard(cards[first], cards[j])];
+            if (k > j) {
+                combination[1] = j;
+                combination[2] = k;
+                if (sink.found(cards, combination)) return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Finds sets of any size by extending partial combinations one card at a time, in the same order as the
+     * combinatorial search. A histogram of the values of every feature in the partial combination is kept, and a
+     * partial combination of m cards is dropped as soon as some feature has neither 1 nor m distinct values.
+     */
+    private boolean findSetsPruning(int[] cards, int first, SetSink sink) {
+        int[] combination = new int[config.featureSize];
+        int[] histograms = new int[config.featureCount * config.featureSize];
+        int[] distinct = new int[config.featureCount];
+        combination[0] = first;
+        addToHistograms(cards[first], 1, histograms, distinct);
+        return extendCombination(cards, combination, 1, histograms, distinct, sink);
+    }
+
+    /**
+     * Tries every next card for a feasible partial combination of m cards.
+     *
+     * @return - true iff the sink stopped the search.
+     */
+    private boolean extendCombination(int[] cards, int[] combination, int m, int[] histograms, int[] distinct,
+                                      SetSink sink) {
+        int r = config.featureSize;
+        if (m == r)
+            return sink.found(cards, combination);
+        for (int i = combination[m - 1] + 1; i <= cards.length - (r - m); ++i) {
+            boolean stop = false;
+            if (addToHistograms(cards[i], m + 1, histograms, distinct)) {
+                combination[m] = i;
+                stop = extendCombination(cards, combination, m + 1, histograms, distinct, sink);
+            }
+            removeFromHistograms(cards[i], histograms, distinct);
+            if (stop) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Adds a card to the feature histograms of a partial combination.
+     *
+     * @param size - the size of the partial combination including the card.
+     * @return - true iff every feature is still all-same or all-different.
+     */
+    private boolean addToHistograms(int card, int size, int[] histograms, int[] distinct) {
+        boolean feasible = true;
+        for (int i = 0; i < config.featureCount; ++i) {
+            if (histograms[i * config.featureSize + features[card * config.featureCount + i]]++ == 0)
+                ++distinct[i];
+            feasible &= distinct[i] == 1 || distinct[i] == size;
+        }
+        return feasible;
+    }
+
+    private void removeFromHistograms(int card, int[] histograms, int[] distinct) {
+        for (int i = 0; i < config.featureCount; ++i)
+            if (--histograms[i * config.featureSize + features[card * config.featureCount + i]] == 0)
+                --distinct[i];
+    }
+
+    private boolean findSetsCombinatorial(int[] cards, int first, SetSink sink) {
+        int n = cards.length;
         int r = config.featureSize;
         int[] combination = new int[r];
 
         for (int i = 0; i < r; ++i)
-            combination[i] = i;
+            combination[i] = first + i;
 
-        while (combination[r - 1] < deck.size()) {
-            int[] cards = Arrays.stream(combination).map(deck::get).sorted().toArray();
-            if (testSet(cards)) {
-                sets.add(cards);
-                if (sets.size() >= count) return sets;
-            }
+        while (combination[r - 1] < n) {
+            if (testCombination(cards, combination) && sink.found(cards, combination)) return true;
+            if (r == 1) return false;
 
-            // generate next combination in lexicographic order
+            // generate next combination in lexicographic order (keeping the first card)
             int t = r - 1;
-            while (t != 0 && combination[t] == n - r + t) --t;
+            while (t != 1 && combination[t] == n - r + t) --t;
             combination[t]++;
             for (int i = t + 1; i < r; i++) combination[i] = combination[i - 1] + 1;
         }
-        return sets;
+        return false;
+    }
+
+    /**
+     * Searches the first card positions in parallel on the fork/join pool (see ParallelSearch).
+     */
+    private List<int[]> findSetsParallel(int[] cards, int[] position, int count) {
+        if (pool == null)
+            synchronized (this) {
+                if (pool == null) pool = new ForkJoinPool(parallelism);
+            }
+        ParallelSearch search = new ParallelSearch(cards, position, count);
+        pool.invoke(search.new Task(0, cards.length));
+        return search.result();
+    }
+
+    /**
+     * A findSets split over the positions of the first card of the sets. Every position is searched by one task
+     * and its sets are kept apart, so the result is assembled in the sequential order.
+     * The search is cancelled early once count sets are known: in ordered mode, only the positions after the first
+     * prefix of positions holding count sets are skipped, so the result is the same as a sequential search.
+     */
+    private class ParallelSearch {
+
+        private final int[] cards;
+        private final int[] position;
+        private final int count;
+
+        /**
+         * The sets found per first card position (null if not searched), published to the other workers by the array.
+         */
+        private final AtomicReferenceArray<List<int[]>> found;
+
+        /**
+         * Positions after the cutoff do not need to be searched.
+         */
+        private volatile int cutoff;
+
+        /**
+         * The number of sets found (unordered mode).
+         */
+        private final AtomicInteger total = new AtomicInteger();
+
+        /**
+         * The length of the prefix of searched positions and the number of sets found in it (ordered mode).
+         */
+        private int prefix;
+        private int prefixSets;
+
+        ParallelSearch(int[] cards, int[] position, int count) {
+            this.cards = cards;
+            this.position = position;
+            this.count = count;
+            found = new AtomicReferenceArray<>(cards.length);
+            cutoff = cards.length;
+        }
+
+        private void search(int first) {
+            if (first > cutoff) return;
+            List<int[]> sets = new ArrayList<>();
+            findSetsFrom(cards, position, first, collect(sets, count));
+            found.set(first, sets);
+
+            if (!config.findSetsOrdered) {
+                if (total.addAndGet(sets.size()) >= count) cutoff = -1;
+            } else synchronized (this) {
+                // the prefix stops growing once it holds count sets
+                while (prefixSets < count && prefix < cards.length && found.get(prefix) != null) {
+                    prefixSets += found.get(prefix).size();
+                    if (prefixSets >= count) cutoff = prefix;
+                    ++prefix;
+                }
+            }
+        }
+
+        private List<int[]> result() {
+            int size = 0;
+            for (int first = 0; first < found.length(); ++first)
+                if (found.get(first) != null) size += found.get(first).size();
+            List<int[]> sets = new ArrayList<>(Math.min(size, count));
+            for (int first = 0; first < found.length(); ++first) {
+                List<int[]> setsFrom = found.get(first);
+                if (setsFrom != null) {
+                    if (sets.size() + setsFrom.size() > count) {
+                        sets.addAll(setsFrom.subList(0, count - sets.size()));
+                        return sets;
+                    }
+                    sets.addAll(setsFrom);
+                }
+            }
+            return sets;
+        }
+
+        private class Task extends RecursiveAction {
+
+            private static final long serialVersionUID = 1L;
+
+            private final int from;
+            private final int to;
+
+            Task(int from, int to) {
+                this.from = from;
+                this.to = to;
+            }
+
+            @Override
+            protected void compute() {
+                if (to - from <= PARALLEL_GRAIN) {
+                    for (int first = from; first < to; ++first)
+                        search(first);
+                } else {
+                    int middle = (from + to) >>> 1;
+                    invokeAll(new Task(from, middle), new Task(middle, to));
+                }
+            }
+        }
+    }
+
+    /**
+     * Checks if the cards at the given positions form a legal set, without allocating when the cards are packed.
+     */
+    private boolean testCombination(int[] cards, int[] combination) {
+        if (packed == null)
+            return testSet(Arrays.stream(combination).map(i -> cards[i]).toArray());
+        long and = -1L, or = 0L;
+        for (int i : combination) {
+            and &= packed[cards[i]];
+            or |= packed[cards[i]];
+        }
+        return isSet(and, or);
+    }
+
+    @Override
+    public SetIndex setIndex() {
+        if (setIndex == null)
+            synchronized (this) {
+                if (setIndex == null) setIndex = createSetIndex();
+            }
+        return setIndex;
+    }
+
+    private SetIndex createSetIndex() {
+        if (config.setIndexDirectory.isEmpty())
+            return new SetIndexImpl(config, this);
+        Path file = Paths.get(config.setIndexDirectory, "sets-" + config.featureSize + "x" + config.featureCount + ".idx");
+        try {
+            return MappedSetIndex.open(file, config, this);
+        } catch (IOException e) {
+            logger.severe("cannot use set index file " + file + " (" + e.getMessage() + "), building it in memory.");
+            return new SetIndexImpl(config, this);
+        }
     }
 
     public void spin() {
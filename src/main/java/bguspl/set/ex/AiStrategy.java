@@ -0,0 +1,114 @@
+package bguspl.set.ex;
+
+import java.util.BitSet;
+import java.util.SplittableRandom;
+import java.util.stream.IntStream;
+
+/**
+ * Decides which keys a computer player presses and when.
+ * A computer player repeatedly asks its strategy for a move, waits the move's think time and presses its keys.
+ * <p>
+ * The built-in strategies are "random", "perfect" and "human" (see create). Other strategies are plugged in by the
+ * name of a class implementing this interface with a public (double skill, long thinkMillis) constructor.
+ */
+public interface AiStrategy {
+
+    /**
+     * Plans the next key presses of a computer player.
+     *
+     * @param table    - a snapshot of the table (its cards and the legal sets on it).
+     * @param selected - the slots the player selected so far (reused by the player, not to be kept after the call).
+     * @param random   - the random source of the player.
+     * @return - the keys to press and when.
+     */
+    Move nextMove(TableSnapshot table, BitSet selected, SplittableRandom random);
+
+    /**
+     * Creates a strategy.
+     *
+     * @param name        - "random", "perfect", "human" or the name of a class implementing AiStrategy.
+     * @param skill       - how good the player is, between 0 and 1 (each strategy decides what it means).
+     * @param thinkMillis - the typical number of milliseconds the player takes to think.
+     * @return - the strategy.
+     * @throws IllegalArgumentException - if the class of the strategy cannot be created.
+     */
+    static AiStrategy create(String name, double skill, long thinkMillis) {
+        switch (name) {
+            case "random":
+                return new RandomAiStrategy(skill, thinkMillis);
+            case "perfect":
+                return new PerfectAiStrategy(thinkMillis);
+            case "human":
+                return new HumanAiStrategy(skill, thinkMillis);
+            default:
+                try {
+                    return (AiStrategy) Class.forName(name).getConstructor(double.class, long.class)
+                            .newInstance(skill, thinkMillis);
+                } catch (ReflectiveOperationException | ClassCastException e) {
+                    throw new IllegalArgumentException("cannot create the computer player strategy " + name, e);
+                }
+        }
+    }
+
+    /**
+     * The keys that make a group of slots the selection of the player: first the selected slots out of the group (to
+     * unselect them), then the slots of the group not selected yet, so the selection never fills up with a wrong
+     * group on the way.
+     *
+     * @param slots    - the slots to select.
+     * @param selected - the slots selected so far.
+     * @return - the slots to press, in order.
+     */
+    static int[] select(int[] slots, BitSet selected) {
+        BitSet group = new BitSet();
+        for (int slot : slots)
+            group.set(slot);
+        BitSet unselect = (BitSet) selected.clone();
+        unselect.andNot(group);
+        group.andNot(selected);
+        return IntStream.concat(unselect.stream(), group.stream()).toArray();
+    }
+
+    /**
+     * A move of a computer player: it waits thinkMillis, then presses the keys keyMillis apart.
+     */
+    final class Move {
+
+        private static final int[] NO_KEYS = new int[0];
+
+        private final long thinkMillis;
+        private final int[] keys;
+        private final long keyMillis;
+
+        /**
+         * @param thinkMillis - the number of milliseconds to wait before the first key press.
+         * @param keys        - the slots of the keys to press, in order.
+         * @param keyMillis   - the number of milliseconds between the key presses.
+         */
+        public Move(long thinkMillis, int[] keys, long keyMillis) {
+            this.thinkMillis = thinkMillis;
+            this.keys = keys;
+            this.keyMillis = keyMillis;
+        }
+
+        /**
+         * @param thinkMillis - the number of milliseconds to wait.
+         * @return - a move that only waits.
+         */
+        public static Move pass(long thinkMillis) {
+            return new Move(thinkMillis, NO_KEYS, 0);
+        }
+
+        public long thinkMillis() {
+            return thinkMillis;
+        }
+
+        public int[] keys() {
+            return keys;
+        }
+
+        public long keyMillis() {
+            return keyMillis;
+        }
+    }
+}
@@ -0,0 +1,195 @@
+package bguspl.set.ex;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * The queue of the players waiting for the dealer to check their sets, in the order of their claims.
+ * Any number of player threads may add claims, but only the dealer thread may take them out.
+ * <p>
+ * A player is in the queue at most once (a bit per player marks the queued players), so a ring of at least as many
+ * entries as players never overflows, and adding or taking out a claim never locks.
+ * <p>
+ * A claim reserves its entry of the ring before it writes the player id into it, so the first claim may be reserved
+ * but not written yet: poll and the waits then treat the queue as empty rather than waiting for the player, and the
+ * write itself wakes the dealer thread up (the player also wakes the dealer up after every claim, see Dealer::wakeUp).
+ *
+ * @inv 0 <= tail - head <= number of queued players <= capacity
+ */
+public class ClaimQueue {
+
+    /**
+     * Marks an entry of the ring that was not written yet.
+     */
+    private static final int EMPTY = -1;
+
+    /**
+     * The ring of player ids (EMPTY where no claim was written), its length is a power of two.
+     */
+    private final AtomicIntegerArray ring;
+    private final int mask;
+
+    /**
+     * A bit per player, set from the moment the claim is added until the dealer takes it out.
+     */
+    private final AtomicLongArray queued;
+
+    /**
+     * The number of claims ever added (reserved entries of the ring) and ever taken out (only the dealer writes it).
+     */
+    private final AtomicLong tail;
+    private volatile long head;
+
+    /**
+     * The dealer thread, while it is parked waiting for a claim, and true iff it was woken up (see wakeUp) since it
+     * last stopped waiting.
+     */
+    private volatile Thread waiting;
+    private volatile boolean woken;
+
+    /**
+     * @param players - the number of players (the ids are 0 to players - 1).
+     */
+    public ClaimQueue(int players) {
+        int capacity = Integer.highestOneBit(Math.max(1, players) * 2 - 1);
+        ring = new AtomicIntegerArray(capacity);
+        for (int i = 0; i < capacity; ++i)
+            ring.set(i, EMPTY);
+        mask = capacity - 1;
+        queued = new AtomicLongArray((players + 63) >>> 6);
+        tail = new AtomicLong();
+    }
+
+    /**
+     * Adds the claim of a player, unless the player is already in the queue.
+     *
+     * @param player - the id of the player.
+     * @return - true iff the claim was added.
+     */
+    public boolean offer(int player) {
+        int word = player >>> 6;
+        long bit = 1L << player;
+        long bits;
+        do {
+            bits = queued.get(word);
+            if ((bits & bit) != 0)
+                return false;
+        } while (!queued.compareAndSet(word, bits, bits | bit));
+
+        ring.set((int) tail.getAndIncrement() & mask, player);
+        Thread dealer = waiting;
+        if (dealer != null)
+            LockSupport.unpark(dealer);
+        return true;
+    }
+
+    /**
+     * Takes out the first claim (dealer thread only).
+     *
+     * @return - the id of the player, or -1 if the queue is empty or its first claim is not written yet.
+     */
+    public int poll() {
+        long index = head;
+        int player = ring.get((int) index & mask);
+        if (player == EMPTY)
+            return EMPTY;
+        ring.set((int) index & mask, EMPTY);
+        head = index + 1;
+        clearQueued(player);
+        return player;
+    }
+
+    /**
+     * Waits as long as needed until there is a claim to take out or the dealer thread is woken up (dealer thread
+     * only), without taking the claim out.
+     *
+     * @throws InterruptedException - if the dealer thread was interrupted while waiting.
+     */
+    public void await() throws InterruptedException {
+        while (!ready() && !woken)
+            park(-1);
+        woken = false;
+    }
+
+    /**
+     * Waits until there is a claim to take out, the dealer thread is woken up or the timeout passed (dealer thread
+     * only), without taking the claim out.
+     *
+     * @param timeout - how long to wait.
+     * @param unit    - the unit of the timeout.
+     * @throws InterruptedException - if the dealer thread was interrupted while waiting.
+     */
+    public void await(long timeout, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        while (!ready() && !woken) {
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0)
+                break;
+            park(remaining);
+        }
+        woken = false;
+    }
+
+    /**
+     * Wakes the dealer thread up from waiting for a claim, or makes its next wait return at once (any thread), so it
+     * checks the game again.
+     */
+    public void wakeUp() {
+        woken = true;
+        Thread dealer = waiting;
+        if (dealer != null)
+            LockSupport.unpark(dealer);
+    }
+
+    /**
+     * @param player - the id of the player.
+     * @return - true iff the player has a claim in the queue.
+     */
+    public boolean contains(int player) {
+        return (queued.get(player >>> 6) & 1L << player) != 0;
+    }
+
+    public boolean isEmpty() {
+        return head == tail.get();
+    }
+
+    public int size() {
+        return (int) (tail.get() - head);
+    }
+
+    //true iff the first claim can be taken out (an entry is EMPTY from the moment it is taken out until the claim
+    //reserving it, at most one lap later, writes it)
+    private boolean ready() {
+        return ring.get((int) head & mask) != EMPTY;
+    }
+
+    //parks the dealer thread for some nanoseconds (or with no timeout if negative), a claim added or a wake-up after it
+    //announced itself wakes it up
+    private void park(long nanos) throws InterruptedException {
+        waiting = Thread.currentThread();
+        try {
+            if (!ready() && !woken) {
+                if (nanos < 0)
+                    LockSupport.park(this);
+                else
+                    LockSupport.parkNanos(this, nanos);
+            }
+        } finally {
+            waiting = null;
+        }
+        if (Thread.interrupted())
+            throw new InterruptedException();
+    }
+
+    private void clearQueued(int player) {
+        int word = player >>> 6;
+        long bit = 1L << player;
+        long bits;
+        do {
+            bits = queued.get(word);
+        } while (!queued.compareAndSet(word, bits, bits & ~bit));
+    }
+}
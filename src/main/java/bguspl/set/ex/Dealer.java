@@ -1,11 +1,17 @@
 package bguspl.set.ex;
 import bguspl.set.Env;
-import java.util.stream.Collectors;
-import java.util.stream.IntStream;
-import java.util.Collections;
-import java.lang.Thread.State;
+import bguspl.set.SetIndex;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * This class manages the dealer's threads and data
@@ -24,105 +30,249 @@ public class Dealer implements Runnable {
     private final Player[] players;
 
     /**
-     * The list of card ids that are left in the dealer's deck.
+     * The card ids that are left in the dealer's deck.
      */
-    private final List<Integer> deck;
+    private final Deck deck;
+
+    /**
+     * The source of the order the cards are dealt in and of the slots they are dealt to (seeded by DeckSeed).
+     */
+    private final SplittableRandom random;
+
+    /**
+     * Tracks whether a legal set can still be collected from the cards left in the game.
+     */
+    private final SetOracle oracle;
 
     /**
      * True iff game should be terminated due to an external event.
      */
+    private volatile boolean terminate;
 
     /**
      * The time when the dealer needs to reshuffle the deck due to turn timeout.
      */
-    private long reshuffleTime = Long.MAX_VALUE;
-    private long time;
+    private volatile long reshuffleTime = Long.MAX_VALUE;
+
+    /**
+     * The time of the last action (reshuffle or set collected), for the elapsed time display.
+     */
+    private volatile long time;
+
+    /**
+     * Updates the countdown (or elapsed time) display on its own thread, only when the displayed value changes,
+     * shows the cards placed and removed one every tableDelayMillis and counts the freezes of the players down.
+     */
+    private ScheduledExecutorService timer;
+    private ScheduledFuture<?> nextTick;
+    private volatile boolean timerStopped;
+
+    /**
+     * The time the last card animation scheduled shows on the ui, and the animations not shown yet in the order they
+     * were scheduled (shown at once when the timer stops, so the final table is cleared too).
+     */
+    private long animationTime;
+    private final ArrayDeque<Runnable> animations = new ArrayDeque<>();
+
+    /**
+     * The number of milliseconds between countdown updates while the warning is displayed.
+     */
+    private static final long WARNING_TICK_MILLIS = 10;
+
+    /**
+     * How long termination waits for the threads of all the players to end.
+     */
+    private static final long STOP_PLAYERS_MILLIS = 5000;
+
+    /**
+     * The number of times all the cards were returned to the deck because the time ran out or the table had no set.
+     */
+    private volatile int reshuffles;
+
+    /**
+     * The threads all the computer players run on (null if there are none): every step of a computer player is a
+     * task scheduled on them.
+     */
+    private volatile ScheduledExecutorService computers;
+
+    /**
+     * The state of the dealer between its steps (see dealerStep): whether a round (from dealing until the reshuffle) is
+     * on and whether the game is over. When the game runs as tasks on env.executor (see start), also the pending
+     * wake-ups of the dealer (the first one schedules a step, and a step runs again while it was woken up meanwhile),
+     * the reshuffle time a wake-up is scheduled for and what to run once the game is over.
+     */
+    private boolean inRound;
+    private boolean over;
+    private final AtomicInteger wakeUps = new AtomicInteger();
+    private long wakeUpTime;
+    private Runnable onFinished;
+
+    private volatile Thread dealerThread;
     Thread[] playersThread;
-    Thread[] aiThreads;
-    private boolean wakeup;
-    private boolean reset;
-    private boolean stopTimerloop;
-    private boolean cardPlaced;
-    private volatile boolean terminate;
-    private boolean stopCounting;
-    private boolean startingCards;
-    private volatile boolean terminatingStarted;
-    int timeFactor;
+    private volatile boolean counting;
 
 
     public Dealer(Env env, Table table, Player[] players) {
         this.env = env;
         this.table = table;
         this.players = players;
-        deck = IntStream.range(0, env.config.deckSize).boxed().collect(Collectors.toList());
+        random = env.config.deckSeed == null ? new SplittableRandom() : new SplittableRandom(env.config.deckSeed);
+        deck = new Deck(env.config.deckSize, random);
+        oracle = new SetOracle(env);
+        table.setAnimation(this::animate);
         playersThread = new Thread[players.length];
-        wakeup = false;
-        stopCounting = true;
-        stopTimerloop = false;
-        startingCards = false;
-        timeFactor = 10;
-        
+        counting = false;
     }
 
     /**
      * The dealer thread starts here (main loop for the dealer thread).
+     * The dealer thread runs the steps of the dealer (see dealerStep), and sleeps on the claims queue between them
+     * until a claim, the reshuffle deadline or termination wakes it up.
      */
     @Override
     public void run() {
-        System.out.printf("Info: Thread %s starting.%n", Thread.currentThread().getName());
-        startingCards = true;
+        dealerThread = Thread.currentThread();
+        env.logger.fine("thread " + Thread.currentThread().getName() + " starting.");
+        startTimer();
         placeCardsOnTable();
-        startingCards = false;
-        searchForAiThreads();
         startPlayerThreads();
-        while (!shouldFinish() && !terminate) {
-            placeCardsOnTable();
-            timerLoop();
-            removeAllCardsFromTable();
-            
+        dealerStep();
+        while (!over) {
+            waitForClaim();
+            dealerStep();
         }
-        if(shouldFinish())
-            announceWinners();
+        env.logger.fine("thread " + Thread.currentThread().getName() + " terminated.");
+    }
 
-        System.out.printf("Info: Thread %s terminated.%n", Thread.currentThread().getName());
+    /**
+     * Starts the game as tasks on env.executor instead of run(): neither the dealer nor the players have threads of
+     * their own, the claims, the reshuffle time and termination schedule the steps of the dealer (see dealerStep).
+     *
+     * @param onFinished - called once the game is over (or was terminated).
+     */
+    public void start(Runnable onFinished) {
+        this.onFinished = onFinished;
+        startTimer();
+        placeCardsOnTable();
+        startPlayerThreads();
+        wakeUp();
+    }
+
+    //schedules a step of the dealer on env.executor unless one is already scheduled, or wakes the dealer thread up
+    //from waiting for a claim (a claim itself wakes it up too)
+    void wakeUp(){
+        if(env.executor == null){
+            table.queue.wakeUp();
+            return;
+        }
+        if(wakeUps.getAndIncrement() == 0 && !env.executor.schedule(this::dealerSteps, 0, TimeUnit.MILLISECONDS))
+            wakeUps.set(0);
+    }
+
+    private void dealerSteps(){
+        do{
+            wakeUps.set(1);
+            dealerStep();
+            if(!over)
+                wakeUpAtReshuffle();
+        }while(wakeUps.decrementAndGet() > 0);
     }
-    
 
     /**
-     * The inner loop of the dealer thread that runs as long as the countdown did not time out.
+     * A step of the dealer: deals the cards of a new round, checks the claims waiting in the queue and reshuffles once
+     * the round is over, until there is no claim to check (the step returns, and a claim, the reshuffle time or
+     * termination wakes the dealer up for the next step) or the game is over.
      */
-    private void timerLoop() {
-        this.stopTimerloop  = false;
-        time = System.currentTimeMillis();
-        while (!stopTimerloop) {
-            if(env.config.hints)
-                table.hints();
-            wakeUpPlayers();
-            updateTimerDisplay(reset);
-            removeCardsFromTable();
-            placeCardsOnTable();
-            checkGameOver();
-            if(terminate){
-                this.stopTimerloop = true;
+    private void dealerStep(){
+        while(!over){
+            if(!inRound){
+                if(shouldFinish() || terminate){
+                    finish();
+                    return;
+                }
+                placeCardsOnTable();
+                resetTimer();
+                checkGameOver();
+                counting = true;
+                inRound = true;
             }
-            if(env.config.turnTimeoutMillis > 0 && reshuffleTime-System.currentTimeMillis()<0)
-                this.stopTimerloop = true;
-            if(env.config.turnTimeoutMillis <= 0 && checkTableCards()){
-                this.stopTimerloop = true;
+            while(roundGoesOn()){
+                Integer player = table.pollFirstClick();
+                if(player == null)
+                    return;
+                removeCardsFromTable(player);
+                placeCardsOnTable();
+                checkGameOver();
             }
-            
-            
+            counting = false;
+            inRound = false;
+            if(!terminate)
+                ++reshuffles;
+            removeAllCardsFromTable();
         }
-       
-    
     }
-    private void checkGameOver(){
-        ArrayList list = new ArrayList<>();
-        for(Slot slot:table.table){
-            if(slot.getCard()!=(null))
-                list.add(slot.getCard());
+
+    //schedules a wake-up of the dealer at the reshuffle time (once per reshuffle time)
+    private void wakeUpAtReshuffle(){
+        if(env.config.turnTimeoutMillis <= 0 || wakeUpTime == reshuffleTime)
+            return;
+        wakeUpTime = reshuffleTime;
+        env.executor.schedule(this::wakeUp, reshuffleTime - System.currentTimeMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    //the end of the game: the winners are shown for endGamePauseMillies (the dealer thread sleeps, a game running as
+    //tasks schedules the rest instead) and the players are stopped
+    private void finish(){
+        over = true;
+        stopTimer();
+        env.logger.info(reshuffles + " reshuffles (" + env.config.dealingStrategy + " dealing).");
+        if(shouldFinish()){
+            showWinners();
+            if(env.executor == null){
+                try{
+                    Thread.sleep(env.config.endGamePauseMillies);
+                }catch(InterruptedException ignored){}
+            }
+            else if(env.executor.schedule(this::gameOver, env.config.endGamePauseMillies, TimeUnit.MILLISECONDS))
+                return;
         }
-        if(env.util.findSets(deck, 1).size() == 0 && env.util.findSets(list, 1).size() == 0){
+        gameOver();
+    }
+
+    private void gameOver(){
+        terminate();
+        if(onFinished != null)
+            onFinished.run();
+    }
+
+    //true until the game ends, the countdown times out or (without a countdown) the table has no set left
+    private boolean roundGoesOn(){
+        if(terminate || timedOut())
+            return false;
+        if(env.config.turnTimeoutMillis > 0)
+            return true;
+        return !checkTableCards();
+    }
+
+    //true iff the countdown reached the reshuffle time
+    private boolean timedOut(){
+        return env.config.turnTimeoutMillis > 0 && System.currentTimeMillis() >= reshuffleTime;
+    }
+
+    //waits until a claim is made, the reshuffle time (with no timeout when there is no countdown) or the dealer thread
+    //is woken up, without taking the claim out
+    private void waitForClaim(){
+        try{
+            if(env.config.turnTimeoutMillis > 0)
+                table.queue.await(reshuffleTime - System.currentTimeMillis(), TimeUnit.MILLISECONDS);
+            else
+                table.queue.await();
+        }catch(InterruptedException ignored){}
+    }
+
+    //the game is over when no legal set is left in the deck and table cards together
+    private void checkGameOver(){
+        if(!oracle.anySetLeft()){
             terminate = true;
         }
     }
@@ -131,20 +281,72 @@ public class Dealer implements Runnable {
      */
     public void terminate() {
         for(Player player : players){
-            if(!player.isHuman()){
+            if(!player.isHuman())
               player.terminateAI();
-              while(player.aiThread.isAlive()){if(player.aiThread.getState() == State.TIMED_WAITING)player.aiThread.interrupt(); synchronized(player.AIlock){player.AIlock.notifyAll();}}
-               try { player.aiThread.join(); } catch (InterruptedException ignored) {}
-            }
         }
+        stopComputers();
         for(Player player : players){
             player.terminate();
-            while(player.playerThread.isAlive()){if(player.playerThread.getState() == State.TIMED_WAITING)player.playerThread.interrupt(); synchronized(player.playerLock){player.playerLock.notifyAll();};synchronized(player.listActions){player.listActions.notifyAll();}}
-            try { player.playerThread.join(); } catch (InterruptedException ignored) {}
+            if(player.playerThread == null)
+                continue; // the dealer did not start it yet, it will stop at once
+            // wake the player thread up from any wait, it sees it should terminate and ends
+            player.playerThread.interrupt();
+            player.wakeUp();
+        }
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(STOP_PLAYERS_MILLIS);
+        for(Player player : players){
+            if(player.playerThread != null && !join(player.playerThread, deadline))
+                env.logger.warning("player " + player.id + " thread did not terminate in time.");
         }
 
         terminate = true;
-        stopTimerloop=true;
+        counting = false;
+        stopTimer();
+        // wake the dealer up if it is waiting for a claim
+        if(dealerThread != null && dealerThread != Thread.currentThread())
+            dealerThread.interrupt();
+        wakeUp();
+    }
+
+    //stops the computer players threads, no step of a computer player runs once this returns (in task mode the
+    //steps share env.executor with other games, they see terminateAi and return at once)
+    private void stopComputers(){
+        ScheduledExecutorService pool = computers;
+        if(pool == null)
+            return;
+        pool.shutdownNow();
+        boolean stopped = false;
+        while(!stopped){
+            try{
+                stopped = pool.awaitTermination(10, TimeUnit.MILLISECONDS);
+            }catch(InterruptedException ignored){}
+        }
+    }
+
+    //runs a step of a computer player on the computer players threads after a delay (in nanoseconds), false once
+    //they were stopped
+    boolean scheduleComputer(Runnable step, long delay){
+        if(env.executor != null)
+            return env.executor.schedule(step, delay, TimeUnit.NANOSECONDS);
+        try{
+            computers.schedule(step, delay, TimeUnit.NANOSECONDS);
+            return true;
+        }catch(RejectedExecutionException e){
+            return false;
+        }
+    }
+
+    //waits for a thread to end until a deadline (nanoTime), false if it did not
+    private static boolean join(Thread thread, long deadline){
+        while(thread.isAlive()){
+            long remaining = deadline - System.nanoTime();
+            if(remaining <= 0)
+                return false;
+            try{
+                TimeUnit.NANOSECONDS.timedJoin(thread, remaining);
+            }catch(InterruptedException ignored){}
+        }
+        return true;
     }
 
     /**
@@ -153,172 +355,302 @@ public class Dealer implements Runnable {
      * @return true iff the game should be finished.
      */
     private boolean shouldFinish() {
-        return terminate && (env.util.findSets(deck, 1).size() == 0);
+        return terminate && !oracle.anySetLeft();
     }
 
     /**
-     * Checks if any cards should be removed from the table and returns them to the deck.
+     * Checks the claim of a player together with all the other claims waiting in the queue, and removes the cards of
+     * the legal sets from the table at once.
+     * Claims are checked in the order they were made, so when claims share cards the first legal one wins, and the
+     * later ones (whose cards are already taken) are dropped without a penalty.
+     *
+     * @param player - the player whose claim woke the dealer up.
      */
-     private void removeCardsFromTable() {
-            while(!table.queue.isEmpty()){
-            
-            Integer player = table.pollFirstClick();
-            List<Integer> tokens = table.getPlayerTokens(player);
-            if (tokens.size() == env.config.featureSize) {
-                int[] tokensArray = tokens.stream().mapToInt(index -> table.slotToCard(index)).toArray();
-                if (env.util.testSet(tokensArray)) {
-                    for (int j = 0; j < table.getLength(); j++) {
-                        if (table.getSlot(j).getPlayerToken().contains(player)) {
-                            if(startingCards){
-                                delay();
-                                table.removeCard(j);
-                            }
-                            else{    
-                                removeSingleCard(j);
-                            }
-                        }
-                    }
-                    players[player].gotPoint = true;
-                } 
-                else {
-                    players[player].gotPanelty = true;
+    private void removeCardsFromTable(Integer player) {
+        List<Integer> claims = new ArrayList<>();
+        for (; player != null; player = table.pollFirstClick())
+            claims.add(player);
+
+        BitSet taken = new BitSet(table.getLength());
+        int[] slots = new int[env.config.featureSize];
+        int[] cards = new int[env.config.featureSize];
+        for (int claimer : claims) {
+            if (table.countTokens(claimer) != env.config.featureSize)
+                continue; // some of the cards were already removed
+            if (!claimedCards(claimer, taken, slots, cards))
+                continue; // an earlier claim won these cards
+            if (env.util.testSet(cards)) {
+                for (int i = 0; i < slots.length; i++) {
+                    taken.set(slots[i]);
+                    oracle.removeCard(cards[i]);
                 }
+                players[claimer].gotPoint = true;
+            }
+            else {
+                players[claimer].gotPanelty = true;
             }
         }
-            
+        if (!taken.isEmpty())
+            removeCards(taken);
+        for (int claimer : claims)
+            players[claimer].claimChecked();
     }
 
+    //fills the slots of the tokens of a player and the cards on them (straight from the bitmap of the player), false if
+    //an earlier claim took one of the slots
+    private boolean claimedCards(int player, BitSet taken, int[] slots, int[] cards){
+        int count = 0;
+        for(int word = 0; word < table.getSlotWords(); word++){
+            for(long bits = table.getPlayerTokenWord(player, word); bits != 0; bits &= bits - 1){
+                int slot = (word << 6) + Long.numberOfTrailingZeros(bits);
+                if(taken.get(slot))
+                    return false;
+                slots[count] = slot;
+                cards[count++] = table.slotToCard(slot);
+            }
+        }
+        return true;
+    }
 
     /**
      * Check if any cards can be removed from the deck and placed on the table.
      */
     public void placeCardsOnTable() {
-        Collections.shuffle(deck);
-        int i =0;
-        while(!deck.isEmpty() && table.countCards() < table.getLength()){
-          if(table.getSlot(i).getCard() == null){
-            int card = deck.get(0);
-            deck.remove(0);
-            if(startingCards){
-                delay();
-                table.placeCard(card, i);
+        boolean placed = false;
+        int[] setCards = env.config.dealingStrategy.equals("smart") ? setCompletingCards() : new int[0];
+        int[] slots = new int[table.getLength()];
+        int free = 0;
+        for(int slot = 0; slot < slots.length; slot++){
+            if(table.getSlot(slot).getCard() == null)
+                slots[free++] = slot;
+        }
+        // the cards completing a set go to random empty slots (a partial Fisher-Yates shuffle of the empty slots)
+        for(int i = 0; i < setCards.length; i++){
+            int j = i + random.nextInt(free - i);
+            int slot = slots[i];
+            slots[i] = slots[j];
+            slots[j] = slot;
+        }
+        for(int i = 0; i < free && !deck.isEmpty(); i++){
+            int card;
+            if(i < setCards.length){
+                card = setCards[i];
+                deck.draw(card);
             }
-            else{      
-                placeSingleCard(card,i);
+            else
+                card = deck.draw();
+            placeSingleCard(card,slots[i]);
+            placed = true;
+        }
+        if(placed){
+            resetTimer();
+            if(env.config.hints)
+                table.hints();
+        }
+    }
+    /**
+     * Chooses the deck cards that complete a legal set on the table when the table has none, preferring the sets that
+     * need the fewest cards from the deck (only the sets of the cards on the table are looked at, through the set
+     * index, and a set entirely from the deck only if none of them can be completed).
+     *
+     * @return - the cards to deal first, or an empty array if the table has a set or no set can be completed.
+     */
+    private int[] setCompletingCards(){
+        int free = table.getLength() - table.countCards();
+        if(free == 0 || deck.isEmpty() || table.hasSet())
+            return new int[0];
+        SetIndex index = env.util.setIndex();
+        BitSet onTable = table.getTableCardBits();
+        int best = -1;
+        int bestMissing = free + 1;
+        for(int card = onTable.nextSetBit(0); card >= 0 && bestMissing > 1; card = onTable.nextSetBit(card + 1)){
+            for(int i = 0; i < index.setsOf(card) && bestMissing > 1; i++){
+                int set = index.setOf(card, i);
+                int missing = missingCards(index, set, onTable);
+                if(missing >= 0 && missing < bestMissing){
+                    best = set;
+                    bestMissing = missing;
+                }
             }
-            reset = true;
+        }
+        if(best < 0 && free >= index.setSize()){
+            int card = deck.find(c -> deckSet(index, c) >= 0);
+            if(card >= 0){
+                best = deckSet(index, card);
+                bestMissing = index.setSize();
             }
-            i++;
         }
+        if(best < 0)
+            return new int[0];
+        int[] cards = new int[bestMissing];
+        int next = 0;
+        for(int i = 0; i < index.setSize(); i++){
+            if(!onTable.get(index.card(best, i)))
+                cards[next++] = index.card(best, i);
+        }
+        return cards;
+    }
 
+    //the number of cards of a set that are not on the table, or -1 if some of them are not in the deck either
+    private int missingCards(SetIndex index, int set, BitSet onTable){
+        int missing = 0;
+        for(int i = 0; i < index.setSize(); i++){
+            int card = index.card(set, i);
+            if(!onTable.get(card)){
+                if(!deck.contains(card))
+                    return -1;
+                ++missing;
+            }
+        }
+        return missing;
     }
-    public void delay(){
-        try{
-            Thread.currentThread().sleep(env.config.tableDelayMillis);
-        } catch (InterruptedException e) {}
+
+    //a set of a deck card all of whose cards are in the deck, or -1 if none
+    private int deckSet(SetIndex index, int card){
+        for(int i = 0; i < index.setsOf(card); i++){
+            int set = index.setOf(card, i);
+            boolean inDeck = true;
+            for(int j = 0; j < index.setSize() && inDeck; j++)
+                inDeck = deck.contains(index.card(set, j));
+            if(inDeck)
+                return set;
+        }
+        return -1;
+    }
+
+    //used to suppurt env cofiguration (tableDelayMillis): the table changes at once and the timer thread shows the
+    //cards one every tableDelayMillis, so the dealer keeps checking claims while the cards are still appearing
+    private synchronized void animate(Runnable show){
+        if(env.config.tableDelayMillis <= 0 || timer == null || timerStopped){
+            show.run();
+            return;
+        }
+        long now = System.currentTimeMillis();
+        animationTime = Math.max(animationTime, now) + env.config.tableDelayMillis;
+        animations.add(show);
+        timer.schedule(this::showNextAnimation, animationTime - now, TimeUnit.MILLISECONDS);
+    }
+
+    //shows the first animation not shown yet (on the timer thread, or on the thread stopping the timer), false if none
+    private boolean showNextAnimation(){
+        Runnable show;
+        synchronized(this){
+            show = animations.poll();
+        }
+        if(show == null)
+            return false;
+        show.run();
+        return true;
     }
 
-    //used to suppurt env cofiguration (tableDelayMillis), while delaying also moving clock
     public void placeSingleCard(int card,int slot){
-        
-        cardPlaced = true;
-        timeFactor =10;
-        for(int i = 0 ; i<env.config.tableDelayMillis/10 ; i++){
-            updateTimerDisplay(false);
-        }
-        if(!(env.config.turnTimeoutMillis > 0))
-            timeFactor = 10;
-        cardPlaced = false;
-        
         table.placeCard(card,slot);
     }
+    //removes the cards of all the collected sets at once (with the tokens on them, found by the bits of each slot)
+    private void removeCards(BitSet slots){
+        table.removeCards(slots);
+    }
     public void removeSingleCard(int slot){
-        for(Player player: players){
-            player.removeToken(slot);
-        }
-        cardPlaced = true;
-        timeFactor =10;
-        for(int i = 0 ; i<env.config.tableDelayMillis/10 ; i++){
-            updateTimerDisplay(false);
-        }
-        if(!(env.config.turnTimeoutMillis > 0))
-        timeFactor = 1000;
-        cardPlaced = false;
         table.removeCard(slot);
     }
-    
 
 
     /**
-     * Reset and/or update the countdown and the countdown display.
+     * Reset the countdown (and the elapsed time) and update the countdown display.
      */
-    private void updateTimerDisplay(boolean reset) {
+    private void resetTimer() {
+        time = System.currentTimeMillis();
+        if(env.config.turnTimeoutMillis > 0)
+            reshuffleTime = time + env.config.turnTimeoutMillis + 999;
+        scheduleTimerDisplay(0);
+    }
 
-        stopCounting = false;
-        boolean warn  =false;
-        if (reset == true){
-            reshuffleTime = System.currentTimeMillis() +env.config.turnTimeoutMillis+999;
-        }
-        while(!stopCounting&&!terminate){
-        if(env.config.turnTimeoutMillis > 0){
-            if(reshuffleTime-System.currentTimeMillis() <= env.config.turnTimeoutWarningMillis){
-                 warn = true;
-                timeFactor = 10;
-            }
-            if(!terminatingStarted) 
-                env.ui.setCountdown(reshuffleTime-System.currentTimeMillis(), warn);
-            if (reshuffleTime-System.currentTimeMillis() < 0.01){
-                stopCounting = true;
-            }
-        }
-        if(!warn && !cardPlaced){timeFactor = 10;};
-        if (env.config.turnTimeoutMillis == 0){
-            if(!terminatingStarted)
-                env.ui.setElapsed(System.currentTimeMillis()-time);
+    //starts the thread updating the timer display and the cards animation (unless the game shares a scheduler)
+    private synchronized void startTimer(){
+        timer = env.scheduler != null ? env.scheduler : Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "dealer-timer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        timerStopped = false;
+        scheduleTimerDisplay(0);
+    }
+
+    private void stopTimer(){
+        synchronized(this){
+            timerStopped = true;
+            if(nextTick != null)
+                nextTick.cancel(false);
+            if(timer != null && timer != env.scheduler)
+                timer.shutdownNow();
         }
-           try{
-                Thread.currentThread().sleep(timeFactor);
-            } catch (InterruptedException e) {}
+        while(showNextAnimation());
+    }
+
+    //runs a task on the timer thread after a delay (in milliseconds), false if the timer was stopped
+    synchronized boolean schedule(Runnable task, long delay){
+        if(timer == null || timerStopped)
+            return false;
+        timer.schedule(() -> {
+            if(!timerStopped)
+                task.run();
+        }, delay, TimeUnit.MILLISECONDS);
+        return true;
+    }
 
+    //replaces the next scheduled display update
+    private synchronized void scheduleTimerDisplay(long delay){
+        if(timer == null || timerStopped || env.config.turnTimeoutMillis < 0)
+            return; // there is nothing to display when turnTimeoutMillis < 0
+        if(nextTick != null)
+            nextTick.cancel(false);
+        nextTick = timer.schedule(this::updateTimerDisplay, delay, TimeUnit.MILLISECONDS);
+    }
 
-        if ((env.config.turnTimeoutMillis <= 0 && checkTableCards())||wakeup||cardPlaced){
-            stopCounting = true;
+    /**
+     * Update the countdown display (runs on the timer thread) and schedule the next update for when the displayed
+     * value changes: every second, or every few milliseconds while the warning is displayed.
+     */
+    private void updateTimerDisplay() {
+        if(terminate)
+            return;
+        long now = System.currentTimeMillis();
+        long next;
+        if(env.config.turnTimeoutMillis > 0){
+            long remaining = Math.max(0, reshuffleTime - now);
+            boolean warn = remaining <= env.config.turnTimeoutWarningMillis;
+            env.ui.setCountdown(remaining, warn);
+            if(remaining == 0)
+                return; // the dealer resets the timer after the reshuffle
+            next = warn ? WARNING_TICK_MILLIS : Math.min(remaining % 1000 + 1, remaining - env.config.turnTimeoutWarningMillis);
         }
-        
+        else{
+            long elapsed = now - time;
+            env.ui.setElapsed(elapsed);
+            next = 1000 - elapsed % 1000;
         }
-        this.wakeup = false;
-        this.reset = false;
+        scheduleTimerDisplay(Math.max(1, next));
     }
 
     /**
      * Returns all the cards from the table to the deck.
      */
 
-    private void removeAllCardsFromTable() { 
+    private void removeAllCardsFromTable() {
         for (int j =0 ; j< table.getLength(); j++){
-            for (int i = 0; i < players.length; i++) {
-                if (table.getSlot(j).getPlayerToken().contains(players[i].id)){
-                    table.removeToken(players[i].id, j);
-                }
-            }
             if(table.getSlot(j).getCard()!=null)
-                deck.add(table.getSlot(j).getCard());
+                deck.returnCard(table.getSlot(j).getCard());
             removeSingleCard(j);
         }
-            
-
-        if(env.config.turnTimeoutMillis>0 && reshuffleTime<0)
-            reshuffleTime = System.currentTimeMillis() +env.config.turnTimeoutMillis+999;
-        
-
-        
+        // the claims left in the queue lost their tokens, release the players waiting for them
+        for(Integer player = table.pollFirstClick(); player != null; player = table.pollFirstClick())
+            players[player].claimChecked();
     }
 
     /**
      * Check who is/are the winner/s and displays them.
      */
-
-    private void announceWinners() {
+    private void showWinners() {
         int maxScore = 0;
         List<Integer> winners = new ArrayList<>();
         for (Player player : players) {
@@ -335,65 +667,55 @@ public class Dealer implements Runnable {
             winnerIds[i] = winners.get(i);
         }
         env.ui.announceWinner(winnerIds);
-        try{
-            Thread.currentThread().sleep(env.config.endGamePauseMillies);
-        }catch(InterruptedException e){}
-        terminate();
     }
-        
-    
 
-    //notify if player in waiting
-    public void wakeUpPlayers(){
-        for (Player player : players){
-            if(!player.onFreezed())
-                synchronized(player.playerLock){player.playerLock.notifyAll();}
-        }
-    }
-    
-   
     //Stating player threads
-    public void startPlayerThreads(){ 
-        for (int i = 0 ; i < players.length;  i++){
-            playersThread[i] = new Thread(players[i],"player");
-            playersThread[i].start();
+    public void startPlayerThreads(){
+        if(env.executor != null){
+            for(Player player : players)
+                player.start(); // no threads, the computer players and the player steps run on env.executor
+            return;
         }
-        //Ugly Solution
-        try{
-            Thread.currentThread().sleep(100);
-        }catch (InterruptedException e){}
-        for(Player player: players){
-            if(!player.isHuman()){
-                player.aiThread.start();
-            }
+        if(countComputerPlayers() > 0){
+            AtomicInteger count = new AtomicInteger();
+            computers = Executors.newScheduledThreadPool(env.config.computerThreads, task -> {
+                Thread thread = env.threads.newThread(task);
+                thread.setName("computers-" + count.incrementAndGet());
+                return thread;
+            });
+        }
+        for (int i = 0 ; i < players.length;  i++){
+            playersThread[i] = env.threads.newThread(players[i]);
+            playersThread[i].setName("player");
+            players[i].playerThread = playersThread[i];
+            playersThread[i].start(); // the player thread schedules the first step of its computer player
         }
-
     }
-    // used to wake up the dealer on timer
-    public void wakeUp(){
-        this.wakeup = true;
-
-    } 
     //looking for a legal set on table
     public boolean checkTableCards(){
-        if(env.util.findSets(table.getTableCards(),1).size() >0){
+        if(table.hasSet()){
                 return false;
-            }       
+            }
         return true;
-    }    
+    }
 
 
-    //looking for players who are not human
-    public void searchForAiThreads(){
+    //the number of players who are not human
+    public int countComputerPlayers(){
         int count = 0;
         for(Player player : players){
             if(!player.isHuman())
                 ++count;
         }
-        aiThreads = new Thread[count];
+        return count;
     }
     //true if dealer is
     public boolean isCounting(){
-        return(!stopCounting);
+        return counting;
+    }
+
+    //the number of reshuffles so far (to compare the dealing strategies)
+    public int getReshuffles(){
+        return reshuffles;
     }
 }
@@ -0,0 +1,114 @@
+package bguspl.set.ex;
+
+import java.util.SplittableRandom;
+import java.util.function.IntPredicate;
+
+/**
+ * The cards left in the dealer's deck, in a random order.
+ * The deck is shuffled lazily (a partial Fisher-Yates shuffle): every draw picks a random card among the cards left,
+ * so only the drawn cards are shuffled and cards returned to the deck are shuffled back in for free.
+ *
+ * @inv 0 <= size <= cards.length
+ */
+public class Deck {
+
+    /**
+     * The cards left in the deck are cards[0..size-1] (in no particular order), position[card] is the index of a card
+     * in cards (-1 if the card is not in the deck).
+     */
+    private final int[] cards;
+    private final int[] position;
+    private int size;
+
+    private final SplittableRandom random;
+
+    /**
+     * @param deckSize - the number of cards in a full deck (the card ids are 0 to deckSize - 1).
+     * @param random   - the source of the order the cards are drawn in.
+     */
+    public Deck(int deckSize, SplittableRandom random) {
+        cards = new int[deckSize];
+        position = new int[deckSize];
+        for (int card = 0; card < deckSize; ++card)
+            cards[card] = position[card] = card;
+        size = deckSize;
+        this.random = random;
+    }
+
+    /**
+     * Draws a random card from the deck.
+     *
+     * @return - the card drawn.
+     * @pre - the deck is not empty.
+     */
+    public int draw() {
+        int card = cards[random.nextInt(size)];
+        draw(card);
+        return card;
+    }
+
+    /**
+     * Draws a specific card from the deck.
+     *
+     * @param card - the card to draw.
+     * @pre - the card is in the deck.
+     */
+    public void draw(int card) {
+        int i = position[card];
+        int last = cards[--size];
+        cards[i] = last;
+        position[last] = i;
+        position[card] = -1;
+    }
+
+    /**
+     * @param card - the card to look for.
+     * @return - true iff the card is in the deck.
+     */
+    public boolean contains(int card) {
+        return position[card] >= 0;
+    }
+
+    /**
+     * Finds a card of the deck that satisfies a condition, trying the cards in a random order.
+     * The order is drawn the same way the cards are (a partial Fisher-Yates shuffle of the cards tried, in place), so
+     * every card is equally likely to be tried first whatever the order of the cards left.
+     *
+     * @param condition - the condition to test the cards with.
+     * @return - a card that satisfies the condition, or -1 if none does.
+     */
+    public int find(IntPredicate condition) {
+        for (int i = 0; i < size; ++i) {
+            swap(i, i + random.nextInt(size - i));
+            if (condition.test(cards[i])) return cards[i];
+        }
+        return -1;
+    }
+
+    /**
+     * Returns a card to the deck.
+     *
+     * @param card - the card to return.
+     * @pre - the card is not in the deck.
+     */
+    public void returnCard(int card) {
+        position[card] = size;
+        cards[size++] = card;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    private void swap(int i, int j) {
+        int card = cards[i];
+        cards[i] = cards[j];
+        cards[j] = card;
+        position[cards[i]] = i;
+        position[card] = j;
+    }
+}
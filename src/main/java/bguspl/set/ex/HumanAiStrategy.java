@@ -0,0 +1,57 @@
+package bguspl.set.ex;
+
+import java.util.BitSet;
+import java.util.SplittableRandom;
+
+/**
+ * A computer player with a human-like reaction time.
+ * Before every selection it looks at the table for a log-normal time whose median is the think time, stretched when
+ * the table has few sets (twice as long with one set as with many), then presses the keys a quarter of a think time
+ * apart. With probability skill the selection is a legal set, otherwise it is a near miss: a legal set with one card
+ * swapped for another card of the table.
+ */
+public class HumanAiStrategy implements AiStrategy {
+
+    /**
+     * The spread of the reaction times (the standard deviation of their logarithm).
+     */
+    private static final double REACTION_SIGMA = 0.5;
+
+    private final double skill;
+    private final long thinkMillis;
+
+    /**
+     * @param skill       - the probability that a selection is a legal set.
+     * @param thinkMillis - the median time it takes to find a set.
+     */
+    public HumanAiStrategy(double skill, long thinkMillis) {
+        this.skill = skill;
+        this.thinkMillis = thinkMillis;
+    }
+
+    @Override
+    public Move nextMove(TableSnapshot table, BitSet selected, SplittableRandom random) {
+        int sets = table.setCount();
+        long reaction = (long) (thinkMillis * Math.exp(REACTION_SIGMA * gaussian(random)) * (1 + 1.0 / Math.max(1, sets)));
+        if (sets == 0)
+            return Move.pass(reaction);
+        int[] slots = table.set(random.nextInt(sets));
+        if (random.nextDouble() >= skill) {
+            int other = random.nextInt(table.size());
+            if (table.card(other) >= 0 && !selectedBy(slots, other))
+                slots[random.nextInt(slots.length)] = other;
+        }
+        return new Move(reaction, AiStrategy.select(slots, selected), thinkMillis / 4);
+    }
+
+    private static boolean selectedBy(int[] slots, int slot) {
+        for (int s : slots)
+            if (s == slot) return true;
+        return false;
+    }
+
+    //a standard normal random number (Box-Muller)
+    private static double gaussian(SplittableRandom random) {
+        return Math.sqrt(-2 * Math.log(1 - random.nextDouble())) * Math.cos(2 * Math.PI * random.nextDouble());
+    }
+}
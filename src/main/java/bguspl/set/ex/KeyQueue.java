@@ -0,0 +1,125 @@
+package bguspl.set.ex;
+
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * The key presses of a player waiting for the player thread, in the order they were pressed.
+ * One input thread (the keyboard or the computer player) adds key presses and only the player thread (or, when the
+ * game runs as tasks, the steps of the player, one at a time) takes them out, so the queue needs no lock: the input
+ * thread never waits for the player thread, a key press that does not fit is dropped (as a key pressed while all the
+ * tokens are placed always was).
+ *
+ * @inv 0 <= tail - head <= capacity
+ */
+public class KeyQueue {
+
+    /**
+     * The ring of the slots pressed and the time of every key press (nanoTime), its length is a power of two.
+     */
+    private final int[] slots;
+    private final long[] times;
+    private final int mask;
+    private final int capacity;
+
+    /**
+     * The number of key presses ever added (only the input thread writes it) and ever taken out (only the player
+     * thread writes it).
+     */
+    private volatile long tail;
+    private volatile long head;
+
+    /**
+     * The player thread, while it is parked waiting for a key press.
+     */
+    private volatile Thread waiting;
+
+    /**
+     * The time the last key press taken out was pressed (player thread only).
+     */
+    private long pressTime;
+
+    /**
+     * @param capacity - the number of key presses the queue holds.
+     */
+    public KeyQueue(int capacity) {
+        int length = Integer.highestOneBit(Math.max(1, capacity) * 2 - 1);
+        slots = new int[length];
+        times = new long[length];
+        mask = length - 1;
+        this.capacity = capacity;
+    }
+
+    /**
+     * Adds a key press (input thread only).
+     *
+     * @param slot - the slot corresponding to the key pressed.
+     * @return - true iff the key press was added, false if the queue is full.
+     */
+    public boolean offer(int slot) {
+        long index = tail;
+        if (index - head >= capacity)
+            return false;
+        slots[(int) index & mask] = slot;
+        times[(int) index & mask] = System.nanoTime();
+        tail = index + 1;
+        Thread player = waiting;
+        if (player != null)
+            LockSupport.unpark(player);
+        return true;
+    }
+
+    /**
+     * Parks the player thread until a key is pressed (player thread only), without taking the key press out. It may
+     * return earlier, when the player thread is unparked for another reason.
+     *
+     * @throws InterruptedException - if the player thread was interrupted while waiting.
+     */
+    public void await() throws InterruptedException {
+        waiting = Thread.currentThread();
+        try {
+            if (head == tail)
+                LockSupport.park(this);
+        } finally {
+            waiting = null;
+        }
+        if (Thread.interrupted())
+            throw new InterruptedException();
+    }
+
+    /**
+     * Takes out the first key press if there is one, without waiting (player thread or player step only).
+     *
+     * @return - the slot corresponding to the key pressed, or -1 if the queue is empty.
+     */
+    public int poll() {
+        long index = head;
+        if (index == tail)
+            return -1;
+        int slot = slots[(int) index & mask];
+        pressTime = times[(int) index & mask];
+        head = index + 1;
+        return slot;
+    }
+
+    /**
+     * @return - the time (nanoTime) the last key press taken out was pressed (player thread only).
+     */
+    public long pressTime() {
+        return pressTime;
+    }
+
+    /**
+     * Drops all the key presses in the queue (player thread only).
+     */
+    public void clear() {
+        head = tail;
+    }
+
+    public boolean isEmpty() {
+        return head == tail;
+    }
+
+    public int size() {
+        return (int) (tail - head);
+    }
+}
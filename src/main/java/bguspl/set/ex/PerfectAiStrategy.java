@@ -0,0 +1,27 @@
+package bguspl.set.ex;
+
+import java.util.BitSet;
+import java.util.SplittableRandom;
+
+/**
+ * A computer player that never misses: every think time it selects a legal set of the table (a random one, so that
+ * several perfect players do not all claim the same set), or waits another think time if the table has none.
+ */
+public class PerfectAiStrategy implements AiStrategy {
+
+    private final long thinkMillis;
+
+    /**
+     * @param thinkMillis - the time it takes to select a set.
+     */
+    public PerfectAiStrategy(long thinkMillis) {
+        this.thinkMillis = thinkMillis;
+    }
+
+    @Override
+    public Move nextMove(TableSnapshot table, BitSet selected, SplittableRandom random) {
+        if (table.setCount() == 0)
+            return Move.pass(thinkMillis);
+        return new Move(thinkMillis, AiStrategy.select(table.set(random.nextInt(table.setCount())), selected), 0);
+    }
+}
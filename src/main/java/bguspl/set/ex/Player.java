@@ -1,9 +1,12 @@
 package bguspl.set.ex;
-import java.lang.Thread.State;
 import bguspl.set.Env;
-import java.util.List;
-import java.util.ArrayList;
-import java.util.List;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
 /**
  * This class manages the players' threads and data
  *
@@ -33,11 +36,6 @@ public class Player implements Runnable {
      */
     public Thread playerThread;
 
-    /**
-     * The thread of the AI (computer) player (an additional thread used to generate key presses).
-     */
-    public Thread aiThread;
-
     /**
      * True iff the player is human (not a computer player).
      */
@@ -55,11 +53,90 @@ public class Player implements Runnable {
     private final Dealer dealer;
     public boolean gotPoint;
     public boolean gotPanelty;
-    private boolean onFreeze;
     private volatile boolean terminatingStarted;
-    public final Object AIlock;
-    public final Object playerLock;
-    public List<Integer> listActions;
+    private volatile boolean waitingForDealer;
+
+    /**
+     * The time (nanoTime) the current freeze of the player ends, no key press counts before it.
+     * Nothing waits for it: the dealer's timer thread counts the freeze down on the ui.
+     */
+    private volatile long frozenUntil;
+
+    /**
+     * The key presses waiting for the player thread (the input thread never waits for the player thread, and the
+     * player thread parks until a key is pressed or its claim was checked).
+     */
+    private final KeyQueue keys;
+
+    /**
+     * Decides the key presses of a computer player (null for a human player).
+     */
+    private final AiStrategy strategy;
+
+    /**
+     * The state of the computer player between its steps (see aiStep): the move it is making, the next key of the
+     * move, the claim epoch the move was planned in and whether it waits for the player thread to resume it.
+     */
+    private AiStrategy.Move move;
+    private int nextKey;
+    private int moveEpoch;
+    private final SplittableRandom random;
+    private final AtomicInteger aiState;
+
+    /**
+     * The slots the computer player selected, filled anew for every move it plans (see selection).
+     */
+    private final BitSet selected;
+    private static final int AI_RUNNING = 0;
+    private static final int AI_PARKED = 1;
+    private static final int AI_RESUMED = 2;
+
+    /**
+     * Counts the claims the player made and the verdicts it applied (player thread only): a move planned in an
+     * earlier epoch presses no more keys, they were planned on a selection that is gone.
+     */
+    private volatile int claimEpoch;
+
+    /**
+     * The number of claims in a row that were rejected (player thread only), and true iff the last one was rejected
+     * and the computer player did not plan a move since.
+     */
+    private volatile int rejections;
+    private volatile boolean rejected;
+
+    /**
+     * The number of moves in a row that only waited (computer player only).
+     */
+    private int passes;
+
+    /**
+     * The least time (in nanoseconds) before the next move after a move that only waits or after too many rejected
+     * claims in a row, doubled for each one in a row up to the maximum, so a computer player that cannot make progress
+     * does not spin on its thread (a few rejected claims in a row are common for the random strategy, they cost
+     * nothing).
+     */
+    private static final long REPLAN_NANOS = 10_000;
+    private static final long MAX_REPLAN_NANOS = 1_000_000;
+    private static final int FREE_REJECTIONS = 16;
+
+    /**
+     * When the last claim was made, the time from every claim until the dealer checked it and the time from every
+     * completing key press until the claim was made (null unless recorded), guarded by lock.
+     */
+    private final ReentrantLock lock;
+    private long claimTime;
+    private long[] claimLatencies;
+    private int claimCount;
+    private long[] keyLatencies;
+    private int keyCount;
+
+    /**
+     * Whether the dealer checked the claim but no step applied the verdict yet (see playerStep), and when the game runs
+     * as tasks on env.executor, the pending wake-ups of the player (the first one schedules a step, and a step runs
+     * again while it was woken up meanwhile).
+     */
+    private volatile boolean verdictPending;
+    private final AtomicInteger wakeUps;
     /**
      * The class constructor.
      *
@@ -76,11 +153,15 @@ public class Player implements Runnable {
         this.human = human;
         this.dealer = dealer;
         score = 0;
-        onFreeze = false;
-        AIlock = new Object();
-        playerLock = new Object();
-        listActions = new ArrayList<>(env.config.featureSize);
-        
+        frozenUntil = System.nanoTime();
+        lock = new ReentrantLock();
+        keys = new KeyQueue(env.config.featureSize);
+        strategy = human ? null : AiStrategy.create(env.config.computerStrategy(id), env.config.computerSkill(id),
+                env.config.computerDelayMillis(id));
+        random = new SplittableRandom();
+        aiState = new AtomicInteger(AI_RUNNING);
+        selected = new BitSet(env.config.tableSize);
+        wakeUps = new AtomicInteger();
     }
 
     /**
@@ -89,77 +170,173 @@ public class Player implements Runnable {
     @Override
     public void run() {
         playerThread = Thread.currentThread();
-        System.out.printf("Info: Thread %s starting.%n", Thread.currentThread().getName());
-        if (!human) createArtificialIntelligence();
+        env.logger.fine("thread " + Thread.currentThread().getName() + " starting.");
+        start();
         while (!terminate) {
-            synchronized(listActions){
-                try{
-                    listActions.wait();
-                }catch (InterruptedException e){}
+            playerStep();
+            if (!terminate && !verdictPending)
+                awaitStep();
+        }
+        env.logger.fine("thread " + Thread.currentThread().getName() + " terminated.");
+    }
+
+    //parks the player thread until the next step has something to do: the dealer's verdict while the claim is checked,
+    //a key press otherwise (both wake it up, and so does termination)
+    private void awaitStep(){
+        try{
+            if(waitingForDealer)
+                LockSupport.park(this);
+            else
+                keys.await();
+        }catch(InterruptedException ignored){}
+    }
+
+    /**
+     * Starts the player: the computer player plans its first move. When the game runs as tasks on env.executor, it is
+     * called instead of run(), the player has no thread and its key presses and the dealer's verdicts schedule its
+     * steps (see playerStep).
+     */
+    public void start(){
+        if (!human)
+            scheduleAi(0);
+    }
+
+    //schedules a step of the player on env.executor unless one is already scheduled
+    private void wakeStep(){
+        if(wakeUps.getAndIncrement() == 0 && !env.executor.schedule(this::playerSteps, 0, TimeUnit.MILLISECONDS))
+            wakeUps.set(0);
+    }
+
+    private void playerSteps(){
+        do{
+            wakeUps.set(1);
+            playerStep();
+        }while(wakeUps.decrementAndGet() > 0);
+    }
+
+    /**
+     * A step of the player: applies the dealer's verdict on the last claim, places and removes the tokens of the keys
+     * pressed and claims a full selection, until there is no key press left or the claim is checked (the step returns,
+     * and the key press or the verdict wakes the player up for the next step). The steps of a player run one at a time.
+     */
+    private void playerStep(){
+        if(terminate)
+            return;
+        if(verdictPending){
+            verdictPending = false;
+            applyVerdict();
+        }
+        while(!terminate && !waitingForDealer && !verdictPending){
+            int slot = keys.poll();
+            if(slot < 0)
+                return;
+            if(!toggleToken(slot)){
+                if(keys.isEmpty())
+                    resumeAi(); // the computer player waits for its keys to be taken
+                continue;
             }
-                playerActions();
-                removeTokens();
-                if(gotPanelty){penalty();}
-                if(gotPoint){gotPoint();}
-                if(terminateAi){terminateAI();}
-                
+            claim();
         }
-        System.out.printf("Info: Thread %s terminated.%n", Thread.currentThread().getName());
-        
+    }
+
+    //removes the tokens of the checked claim, gives the point or the penalty and resumes the computer player
+    private void applyVerdict(){
+        removeTokens();
+        rejections = gotPanelty ? rejections + 1 : 0;
+        rejected = gotPanelty;
+        if(gotPanelty){penalty();}
+        if(gotPoint){gotPoint();}
+        if(terminateAi){terminateAI();}
+        keys.clear(); // the keys pressed before the claim was checked are stale
+        ++claimEpoch; // and so are the keys the computer player did not press yet
+        resumeAi();
     }
 
     /**
-     * Creates an additional thread for an AI (computer) player. The main loop of this thread repeatedly generates
-     * key presses. If the queue of key presses is full, the thread waits until it is not full.
+     * One step of the AI (computer) player: it plans a move on a snapshot of the table, or presses the next key of
+     * its move, and schedules the next step. The steps run one at a time on the dealer's computer players scheduler
+     * (or on env.executor when the game runs as tasks), so the computer player needs no thread of its own.
      */
-    private void createArtificialIntelligence() {
-        // note: this is a very very smart AI (!)
-        
-        aiThread = new Thread(() -> {
-            System.out.printf("Info: Thread %s starting.%n", Thread.currentThread().getName());
-            /**
-             *   Two options possible, first is doing 3 random key press, other one  is doing a right set, I can choose how right the AI 
-             *   by changing the random in goodans to be more, often or not.   
-             */
-            while (!terminateAi) {
-                int time = (int)(Math.random() * (3));
-                int goodAnswer = (int)(Math.random() * (4));     
-                 if(table.getPlayerTokens(this.id).size() == 0 && goodAnswer == 0){
-                    List<Integer> set = table.getTableCards();
-                    int[] goodSet = new int[0];
-                    try{goodSet = (env.util.findSets(set, 1)).get(0);}catch(IndexOutOfBoundsException e){}
-                    if(goodSet.length == env.config.featureSize){
-                    for(int card : goodSet){
-                           keyPressed(table.cardToSlot(card));
-                           try {
-                            aiThread.sleep(time*1000);
-                        } catch(InterruptedException e){}
-                        
-                     }
-
-                    }
-                 }
-            else{
-                int slot = (int)(Math.random() * (table.getLength()));
-                if(table.getSlot(slot) != null){
-                    keyPressed(slot);
+    private void aiStep(){
+        if(terminateAi)
+            return;
+        if(move != null && moveEpoch != claimEpoch)
+            move = null; // a claim was made or checked since the move was planned
+        if(move == null){
+            long frozen = frozenUntil - System.nanoTime();
+            if(frozen > 0){
+                nextStep(frozen);
+                return;
+            }
+            // no key press counts until the dealer checked the claim
+            if(waitingForDealer && parkAi())
+                return;
+            moveEpoch = claimEpoch;
+            move = strategy.nextMove(table.snapshot(), selection(), random);
+            nextKey = 0;
+            long delay = TimeUnit.MILLISECONDS.toNanos(move.thinkMillis());
+            passes = move.keys().length == 0 ? passes + 1 : 0;
+            int misses = Math.max(passes, rejected ? rejections - FREE_REJECTIONS : 0);
+            if(misses > 0)
+                delay = Math.max(delay, replanDelay(misses));
+            rejected = false;
+            nextStep(delay);
+            return;
+        }
+        int[] moveKeys = move.keys();
+        if(nextKey == moveKeys.length - 1)
+            aiState.set(AI_RUNNING); // only the player thread taking the last key resumes the next move
+        boolean accepted = nextKey < moveKeys.length && offerKey(moveKeys[nextKey++]);
+        if(nextKey < moveKeys.length){
+            nextStep(TimeUnit.MILLISECONDS.toNanos(move.keyMillis()));
+            return;
+        }
+        move = null;
+        // the next move is planned on the selection these keys make, once the player thread took them
+        if(moveKeys.length > 1 && accepted && parkAi())
+            return;
+        nextStep(0);
+    }
+
+    //the least delay before the next move after a number of misses in a row
+    private static long replanDelay(int misses){
+        return Math.min(MAX_REPLAN_NANOS, REPLAN_NANOS << Math.min(misses - 1, 20));
+    }
+
+    //schedules the next step after a delay (in nanoseconds), without a delay it runs after the steps already queued
+    private void nextStep(long delay){
+        scheduleAi(delay);
+    }
+
+    private void scheduleAi(long delay){
+        dealer.scheduleComputer(this::aiStep, delay);
+    }
+
+    //stops scheduling steps until the player thread resumes the computer player, false if it already did
+    private boolean parkAi(){
+        if(aiState.compareAndSet(AI_RESUMED, AI_RUNNING))
+            return false;
+        if(aiState.compareAndSet(AI_RUNNING, AI_PARKED))
+            return true;
+        aiState.set(AI_RUNNING); // resumed meanwhile
+        return false;
+    }
+
+    //called by the player thread once it took the keys of the computer player or applied the dealer's verdict
+    private void resumeAi(){
+        if(human)
+            return;
+        while(true){
+            int state = aiState.get();
+            if(state == AI_PARKED){
+                if(aiState.compareAndSet(AI_PARKED, AI_RUNNING)){
+                    scheduleAi(0);
+                    return;
                 }
-                try {
-                    aiThread.sleep(time*1000);
-                } catch(InterruptedException e){}
             }
-            if (onFreeze) {              
-                synchronized(AIlock) {
-                  try{
-                if(!terminatingStarted)
-                    AIlock.wait();
-                  }catch (InterruptedException e){}
-         }
+            else if(aiState.compareAndSet(state, AI_RESUMED))
+                return;
         }
-       }
-            System.out.printf("Info: Thread %s terminated.%n", Thread.currentThread().getName());
-        }, "computer-" + id);
-        
     }
 
     /**
@@ -176,58 +353,128 @@ public class Player implements Runnable {
          terminateAi = true;
 
     }
-    public void playerActions(){
-        for(int i : listActions){
-            table.placeToken(this.id, i);
+
+    //wakes the player thread up from any wait (so it can see it should terminate)
+    public void wakeUp(){
+        unpark(playerThread);
+    }
+    //claims the set of the tokens on the table
+    private void claim(){
+        long now = System.nanoTime();
+        lock.lock();
+        try{
+            claimTime = now;
+            if(keyLatencies != null){
+                if(keyCount == keyLatencies.length)
+                    keyLatencies = Arrays.copyOf(keyLatencies, keyCount * 2);
+                keyLatencies[keyCount++] = now - keys.pressTime();
+            }
+        }finally{
+            lock.unlock();
         }
+        // the dealer thread sleeps on the claims queue, the claim itself wakes it up
+        waitingForDealer = true;
+        ++claimEpoch;
+        table.insertPlayerThirdClick(id);
         dealer.wakeUp();
-        synchronized(playerLock){
-            try{
-                playerLock.wait();
-            }catch(InterruptedException e){}}
-        synchronized(listActions){
-            listActions.clear();
+    }
+    //called by the dealer once the claim of the player was checked
+    public void claimChecked(){
+        lock.lock();
+        try{
+            if(claimLatencies != null && waitingForDealer){
+                if(claimCount == claimLatencies.length)
+                    claimLatencies = Arrays.copyOf(claimLatencies, claimCount * 2);
+                claimLatencies[claimCount++] = System.nanoTime() - claimTime;
+            }
+        }finally{
+            lock.unlock();
         }
+        verdictPending = true; // before any key press can wake a step up
+        waitingForDealer = false;
+        if(env.executor != null)
+            wakeStep();
+        else
+            unpark(playerThread);
     }
-    public void removeToken(int slot){
-        synchronized(listActions){
-        if(listActions.contains(slot)){
-            listActions.remove(listActions.indexOf(slot));
+    //start keeping the time from every claim until the dealer checked it and from every completing key press until
+    //the claim was made (for the simulation mode)
+    public void recordClaimLatencies(){
+        lock.lock();
+        try{
+            if(claimLatencies == null){
+                claimLatencies = new long[16];
+                keyLatencies = new long[16];
+            }
+        }finally{
+            lock.unlock();
         }
+    }
+    //the recorded times (in nanoseconds) from a claim until the dealer checked it
+    public long[] getClaimLatencies(){
+        lock.lock();
+        try{
+            return claimLatencies == null ? new long[0] : Arrays.copyOf(claimLatencies, claimCount);
+        }finally{
+            lock.unlock();
         }
-        env.ui.removeToken(id, slot);
     }
-
-    public  void removeTokens(){
-        for(Slot slot : table.table){
-            slot.removeToken(id);
-            env.ui.removeToken(id, slot.getSlotId());
+    //the recorded times (in nanoseconds) from the key press completing a selection until the claim was made
+    public long[] getKeyLatencies(){
+        lock.lock();
+        try{
+            return keyLatencies == null ? new long[0] : Arrays.copyOf(keyLatencies, keyCount);
+        }finally{
+            lock.unlock();
         }
     }
+    public  void removeTokens(){
+        table.removeTokens(id);
+    }
     /**
      * This method is called when a key is pressed.
+     * It only hands the key press to the player thread, so the input thread (the keyboard or the computer player)
+     * never waits for the player thread. The key presses of a player must all come from one input thread.
      *
      * @param slot - the slot corresponding to the key pressed.
      */
     public void keyPressed(int slot) {
-        synchronized(listActions){
-        if(listActions.size() <env.config.featureSize && !onFreeze && dealer.isCounting() && table.getSlot(slot).getCard() != null)
-            
-            if(!listActions.contains(slot)){
-                listActions.add(slot);
-                env.ui.placeToken(id, slot);
-            }
-            else{
-                listActions.remove(listActions.indexOf(slot));
-                env.ui.removeToken(id, slot);
-                
-            }           
-
-        if (listActions.size() == env.config.featureSize) {
-            table.insertPlayerThirdClick(id);
-            {listActions.notifyAll();}
-        }
+        offerKey(slot);
+    }
+
+    //hands a key press to the player thread, true iff it counts
+    private boolean offerKey(int slot){
+        if(onFreezed() || waitingForDealer || !dealer.isCounting() || table.getSlot(slot).getCard() == null
+                || !keys.offer(slot))
+            return false;
+        if(env.executor != null)
+            wakeStep();
+        return true;
+    }
+
+    //places or removes the token of a key press (player thread), true iff the player selected a full set of slots
+    private boolean toggleToken(int slot){
+        if(table.removeToken(id, slot))
+            return false;
+        if(table.countTokens(id) >= env.config.featureSize || !table.placeToken(id, slot))
+            return false;
+        env.ui.placeToken(id, slot);
+        return table.countTokens(id) == env.config.featureSize;
+    }
+
+    //the slots the player selected so far (the same bitmap every time, computer player steps only)
+    private BitSet selection(){
+        selected.clear();
+        for(int word = 0; word < table.getSlotWords(); word++){
+            for(long slots = table.getPlayerTokenWord(id, word); slots != 0; slots &= slots - 1)
+                selected.set((word << 6) + Long.numberOfTrailingZeros(slots));
         }
+        return selected;
+    }
+
+    private static void unpark(Thread thread){
+        if(thread != null)
+            LockSupport.unpark(thread);
     }
     //give the player a panelty
     public void givePanelty(){
@@ -262,30 +509,25 @@ public class Player implements Runnable {
             freezePlayer(env.config.penaltyFreezeMillis);
         gotPanelty = false;
     }
-    //freezing player for the time set in the configuration
+    //freezing player for the time set in the configuration (the player thread goes on at once)
     public void freezePlayer(long time){
-        boolean stop = false;
-        onFreeze = true;
-        try{
-            while(!stop&&!terminate){
-             synchronized(playerLock){   
-                env.ui.setFreeze(id, time);
-             }
-                playerThread.sleep(1000);
-                time = time - 1000;
-                if(time <= 0 ){
-                    env.ui.setFreeze(id, 0);
-                    stop = true;
-                    break;
-                }
-            }
-         } catch (InterruptedException e) {}
-         onFreeze = false;
-       synchronized(AIlock) {
-         if(!human){
-            AIlock.notifyAll();
-         }
-       }
+        if(time <= 0)
+            return;
+        long deadline = System.nanoTime() + time * 1_000_000;
+        frozenUntil = deadline;
+        showFreeze(deadline);
+    }
+    //shows the seconds left of a freeze (rounded up) and schedules the next update for when they change
+    private void showFreeze(long deadline){
+        if(deadline != frozenUntil)
+            return; // a later freeze replaced this one
+        long remaining = (deadline - System.nanoTime()) / 1_000_000;
+        if(remaining > 0 && !terminate){
+            env.ui.setFreeze(id, (remaining + 999) / 1000 * 1000);
+            if(dealer.schedule(() -> showFreeze(deadline), (remaining - 1) % 1000 + 1))
+                return;
+        }
+        env.ui.setFreeze(id, 0);
     }
     //Get Players Score
     public int getScore() {
@@ -298,6 +540,6 @@ public class Player implements Runnable {
     }
     
     public boolean onFreezed(){
-        return(this.onFreeze);
+        return System.nanoTime() - frozenUntil < 0;
     }
 }
@@ -0,0 +1,32 @@
+package bguspl.set.ex;
+
+import java.util.BitSet;
+import java.util.SplittableRandom;
+
+/**
+ * The original computer player: it presses a random key (occupied slot or not) after a random 0, 1 or 2 think times,
+ * except that with probability skill, when it has no token on the table, it presses the keys of a legal set of the
+ * table.
+ */
+public class RandomAiStrategy implements AiStrategy {
+
+    private final double skill;
+    private final long thinkMillis;
+
+    /**
+     * @param skill       - the probability of pressing the keys of a legal set (when no token is placed).
+     * @param thinkMillis - the think time.
+     */
+    public RandomAiStrategy(double skill, long thinkMillis) {
+        this.skill = skill;
+        this.thinkMillis = thinkMillis;
+    }
+
+    @Override
+    public Move nextMove(TableSnapshot table, BitSet selected, SplittableRandom random) {
+        long pause = random.nextInt(3) * thinkMillis;
+        if (selected.isEmpty() && table.setCount() > 0 && random.nextDouble() < skill)
+            return new Move(0, table.set(random.nextInt(table.setCount())), pause);
+        return new Move(pause, new int[]{random.nextInt(table.size())}, 0);
+    }
+}
@@ -0,0 +1,73 @@
+package bguspl.set.ex;
+
+import bguspl.set.Env;
+import bguspl.set.SetIndex;
+
+import java.util.BitSet;
+
+/**
+ * Answers whether a legal set can still be collected from the cards left in the game (deck and table together).
+ * Cards leave the game only when collected, so the legal sets that are still achievable are counted once and updated
+ * as cards leave.
+ */
+public class SetOracle {
+
+    /**
+     * The set index of the deck.
+     */
+    private final SetIndex index;
+    private final int setSize;
+
+    /**
+     * The cards that left the game.
+     */
+    private final BitSet gone;
+
+    /**
+     * The number of legal sets none of whose cards left the game.
+     */
+    private int setsLeft;
+
+    /**
+     * @param env - the game environment object.
+     */
+    public SetOracle(Env env) {
+        index = env.util.setIndex();
+        setSize = env.config.featureSize;
+        gone = new BitSet(env.config.deckSize);
+        setsLeft = index.setCount();
+    }
+
+    /**
+     * Removes a card from the game, breaking every achievable set it participates in.
+     *
+     * @param card - the card that left the game.
+     */
+    public synchronized void removeCard(int card) {
+        if (gone.get(card)) return;
+        for (int i = 0; i < index.setsOf(card); ++i)
+            if (achievable(index.setOf(card, i)))
+                --setsLeft;
+        gone.set(card);
+    }
+
+    /**
+     * @return - true iff at least one legal set can still be collected.
+     */
+    public synchronized boolean anySetLeft() {
+        return setsLeft > 0;
+    }
+
+    /**
+     * @return - the number of legal sets that can still be collected.
+     */
+    public synchronized int setsLeft() {
+        return setsLeft;
+    }
+
+    private boolean achievable(int set) {
+        for (int i = 0; i < setSize; ++i)
+            if (gone.get(index.card(set, i))) return false;
+        return true;
+    }
+}
@@ -1,6 +1,5 @@
 package bguspl.set.ex;
-import java.util.List;
-import java.util.ArrayList;
+import java.util.concurrent.atomic.AtomicLongArray;
 import bguspl.set.Env;
 
 /**
@@ -8,9 +7,9 @@ import bguspl.set.Env;
  * A Slot can contain a card and tokens placed by players.
  */
 public class Slot {
-    
-    private Integer card; // Holds the card value for the Slot
-    private List<Integer> playerToken; // Holds tokens placed by players
+
+    private volatile Integer card; // Holds the card value for the Slot
+    private final AtomicLongArray playerTokens; // A bit per player who placed a token on the Slot
     private int slotId; // Unique identifier for the Slot
     private final Env env; // The game environment
 
@@ -22,7 +21,7 @@ public class Slot {
      */
     public Slot(int slotId, Env env) {
         this.slotId = slotId;
-        this.playerToken = new ArrayList<>();
+        this.playerTokens = new AtomicLongArray((env.config.players + 63) >>> 6);
         this.card = null;
         this.env = env;
     }
@@ -40,9 +39,11 @@ public class Slot {
      * Places a token on this Slot for a given player.
      *
      * @param playerId The ID of the player placing the token.
+     * @return True if the token was placed; false if the player already had a token on this Slot.
      */
-    public synchronized void placeToken(Integer playerId) {
-        this.playerToken.add(playerId);
+    public boolean placeToken(int playerId) {
+        long bit = 1L << playerId;
+        return (playerTokens.getAndAccumulate(playerId >>> 6, bit, (bits, set) -> bits | set) & bit) == 0;
     }
 
     /**
@@ -55,20 +56,34 @@ public class Slot {
     }
 
     /**
-     * Retrieves the list of player tokens placed on this Slot.
+     * Checks whether a player has a token on this Slot.
      *
-     * @return A list of player IDs who have tokens on this Slot.
+     * @param playerId The ID of the player.
+     * @return True if the player has a token on this Slot.
      */
-    public synchronized List<Integer> getPlayerToken() {
-        return this.playerToken;
+    public boolean hasToken(int playerId) {
+        return (playerTokens.get(playerId >>> 6) & 1L << playerId) != 0;
+    }
+
+    /**
+     * Checks whether any player has a token on this Slot.
+     *
+     * @return True if there is at least one token on this Slot.
+     */
+    public boolean hasTokens() {
+        for (int word = 0; word < playerTokens.length(); word++) {
+            if (playerTokens.get(word) != 0)
+                return true;
+        }
+        return false;
     }
 
     /**
-     * Removes the card from this Slot and clears all tokens.
+     * Removes the card from this Slot (the tokens are removed by the table, which also keeps the tokens of each
+     * player).
      */
     public void removeCard() {
         this.card = null;
-        removeAllTokens();
     }
 
     /**
@@ -77,12 +92,9 @@ public class Slot {
      * @param playerId The ID of the player whose token is to be removed.
      * @return True if the token was successfully removed; false otherwise.
      */
-    public synchronized boolean removeToken(int playerId) {
-        boolean placed = playerToken.contains(playerId);
-        if (placed) {
-            playerToken.remove(playerToken.indexOf(playerId));
-        }
-        return placed;
+    public boolean removeToken(int playerId) {
+        long bit = 1L << playerId;
+        return (playerTokens.getAndAccumulate(playerId >>> 6, ~bit, (bits, kept) -> bits & kept) & bit) != 0;
     }
 
     /**
@@ -95,9 +107,21 @@ public class Slot {
     }
 
     /**
-     * Removes all tokens from this Slot.
+     * The number of words of 64 players the tokens on this Slot are kept in.
+     *
+     * @return The number of words.
+     */
+    public int tokenWords() {
+        return playerTokens.length();
+    }
+
+    /**
+     * Removes the tokens of 64 players from this Slot at once.
+     *
+     * @param word The word of the players (players 64 * word to 64 * word + 63).
+     * @return The players whose tokens were removed, a bit per player of the word.
      */
-    public synchronized void removeAllTokens() {
-        playerToken.clear();
+    public long removeTokens(int word) {
+        return playerTokens.getAndSet(word, 0);
     }
 }
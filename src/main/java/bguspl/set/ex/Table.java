@@ -1,13 +1,13 @@
 package bguspl.set.ex;
 import bguspl.set.Env;
-import java.beans.Transient;
+import bguspl.set.SetIndex;
 import java.util.Arrays;
+import java.util.BitSet;
 import java.util.List;
-import java.util.Objects;
 import java.util.stream.Collectors;
-import java.util.LinkedList;
-import java.util.Queue;
 import java.util.ArrayList;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Consumer;
 
 
 /**
@@ -34,7 +34,39 @@ public class Table {
 
 
     public Slot[] table;
-    public volatile Queue<Integer> queue;
+
+    /**
+     * The slots each player placed tokens on, a bit per slot in slotWords words per player (each slot keeps a bit per
+     * player too, so both the tokens of a player and the tokens on a slot are found without a search).
+     */
+    private final AtomicLongArray playerTokens;
+    private final int slotWords;
+
+    /**
+     * The ids of the players waiting for the dealer to check their sets, in the order of their claims.
+     * The dealer thread blocks on it until a claim arrives.
+     */
+    public final ClaimQueue queue;
+
+    /**
+     * The cards on the table and the ids (in the set index) of the sets all of whose cards are on the table.
+     * They are updated on every card placed or removed and guarded by setsLock.
+     */
+    private final BitSet onTable;
+    private int[] liveSets;
+    private int liveCount;
+    private final Object setsLock;
+
+    /**
+     * The last snapshot of the table (null once the table changed), shared by all the players until the next change.
+     */
+    private volatile TableSnapshot snapshot;
+
+    /**
+     * Shows the cards placed on and removed from the table on the ui (the table itself changes at once).
+     */
+    private volatile Consumer<Runnable> animation;
+
     /**
      * Constructor for testing.
      *
@@ -52,7 +84,14 @@ public class Table {
         for (int i = 0; i < table.length; i++) {
             table[i] = new Slot(i,env);
         }
-        queue  = new LinkedList<>();
+        slotWords = (table.length + 63) >>> 6;
+        playerTokens = new AtomicLongArray(env.config.players * slotWords);
+        queue  = new ClaimQueue(env.config.players);
+        onTable = new BitSet(env.config.deckSize);
+        liveSets = new int[env.config.tableSize];
+        liveCount = 0;
+        setsLock = new Object();
+        animation = Runnable::run;
     }
     /**
      * Constructor for actual usage.
@@ -65,6 +104,15 @@ public class Table {
         
     }
 
+    /**
+     * Sets how the cards placed on and removed from the table are shown on the ui (immediately by default).
+     *
+     * @param animation - runs (or schedules) an update of the ui.
+     */
+    public void setAnimation(Consumer<Runnable> animation){
+        this.animation = animation;
+    }
+
     public int getLength(){
         int size = table.length;
         return(size);
@@ -79,8 +127,7 @@ public class Table {
      * This method prints all possible legal sets of cards that are currently on the table.
      */
     public void hints() {
-        List<Integer> deck = Arrays.stream(slotToCard).filter(Objects::nonNull).collect(Collectors.toList());
-        env.util.findSets(deck, Integer.MAX_VALUE).forEach(set -> {
+        getSets().forEach(set -> {
             StringBuilder sb = new StringBuilder().append("Hint: Set found: ");
             List<Integer> slots = Arrays.stream(set).mapToObj(card -> cardToSlot[card]).sorted().collect(Collectors.toList());
             int[][] features = env.util.cardsToFeatures(set);
@@ -115,7 +162,8 @@ public class Table {
         slotToCard[slot] = card;
         if(table[slot].getCard() == null){  
             table[slot].placeCard(card);
-            env.ui.placeCard(card, slot);
+            addLiveSets(card);
+            animation.accept(() -> env.ui.placeCard(card, slot));
         }
     
         
@@ -130,31 +178,58 @@ public class Table {
         
 
         if (table[slot].getCard() != null){
+            removeLiveSets(table[slot].getCard());
             table[slot].removeCard();
-            env.ui.removeCard(slot);
+            animation.accept(() -> env.ui.removeCard(slot));
             env.ui.removeTokens(slot);
-            while(!table[slot].getPlayerToken().isEmpty()){
-                removeTokensFromSlot(slot);
-            }
+            removeTokensFromSlot(slot);
             }
         
     }
 
+    /**
+     * Removes the cards of several grid slots from the table at once, updating the legal sets on the table once.
+     * @param slots - the slots from which to remove the cards.
+     */
+
+    public void removeCards(BitSet slots) {
+        int[] cards = new int[slots.cardinality()];
+        int removed = 0;
+        for (int slot = slots.nextSetBit(0); slot >= 0; slot = slots.nextSetBit(slot + 1)) {
+            if (table[slot].getCard() != null) {
+                cards[removed++] = table[slot].getCard();
+                table[slot].removeCard();
+                int removedSlot = slot;
+                animation.accept(() -> env.ui.removeCard(removedSlot));
+                env.ui.removeTokens(slot);
+                removeTokensFromSlot(slot);
+            }
+        }
+        removeLiveSets(Arrays.copyOf(cards, removed));
+    }
+
     /**
      * Places a player token on a grid slot.
      * @param player - the player the token belongs to.
      * @param slot   - the slot on which to place the token.
+     * @return       - true iff the token was placed (the slot has a card and the player had no token on it).
      */
 
-    public void placeToken(int player, int slot) {
-
-        // Check if the player has already placed a token in the specified slot
-        if (!Arrays.asList(table[slot].getPlayerToken()).contains(player) && table[slot].getCard() != null) {
-            // Place the token and update the UI
-            table[slot].placeToken(player);
-            }
-        
-        
+    public boolean placeToken(int player, int slot) {
+
+        Integer card = table[slot].getCard();
+        if (card == null || hasToken(player, slot))
+            return false;
+        setBit(playerTokens, player * slotWords + (slot >>> 6), 1L << slot);
+        table[slot].placeToken(player);
+        // the card was removed (and maybe replaced) meanwhile, and its tokens may have been removed before this one
+        // was placed, so the token would end up on no card or on a card the player did not choose
+        if (!card.equals(table[slot].getCard())) {
+            if (table[slot].removeToken(player))
+                clearBit(playerTokens, player * slotWords + (slot >>> 6), 1L << slot);
+            return false;
+        }
+        return true;
     }
 
     /**
@@ -168,6 +243,7 @@ public class Table {
 
         boolean removed = table[slot].removeToken(player);
         if (removed == true){
+            clearBit(playerTokens, player * slotWords + (slot >>> 6), 1L << slot);
             env.ui.removeToken(player, slot);
         }
         return removed;
@@ -179,9 +255,12 @@ public class Table {
      * @param player - the player whose tokens are to be removed
      */
     public void removeTokens(int player){
-        for (Slot slot : table){
-            if (slot.getPlayerToken().contains(player)){
-                slot.removeToken(player);
+        for (int word = 0; word < slotWords; word++) {
+            long slots = playerTokens.getAndSet(player * slotWords + word, 0);
+            for (; slots != 0; slots &= slots - 1) {
+                int slot = (word << 6) + Long.numberOfTrailingZeros(slots);
+                if (table[slot].removeToken(player))
+                    env.ui.removeToken(player, slot);
             }
         }
     }
@@ -192,14 +271,59 @@ public class Table {
      * @param slot - the slot from which all tokens are to be removed
      */
     public void removeTokensFromSlot(int slot){
-        while(!table[slot].getPlayerToken().isEmpty()){
-            for(int token : table[slot].getPlayerToken()){
-                env.ui.removeToken(token, slot);
+        for (int word = 0; word < table[slot].tokenWords(); word++) {
+            for (long players = table[slot].removeTokens(word); players != 0; players &= players - 1) {
+                int player = (word << 6) + Long.numberOfTrailingZeros(players);
+                clearBit(playerTokens, player * slotWords + (slot >>> 6), 1L << slot);
+                env.ui.removeToken(player, slot);
             }
-            table[slot].removeAllTokens();
         }
     }
 
+    /**
+     * Checks if a player has a token on a grid slot.
+     *
+     * @param player - the player the token belongs to.
+     * @param slot   - the slot to check.
+     * @return       - true iff the player has a token on the slot.
+     */
+    public boolean hasToken(int player, int slot){
+        return (playerTokens.get(player * slotWords + (slot >>> 6)) & 1L << slot) != 0;
+    }
+
+    /**
+     * Counts the tokens a player placed on the table.
+     *
+     * @param player - the player whose tokens are to be counted
+     * @return       - the number of slots where the player has a token
+     */
+    public int countTokens(int player){
+        int count = 0;
+        for (int word = 0; word < slotWords; word++)
+            count += Long.bitCount(playerTokens.get(player * slotWords + word));
+        return count;
+    }
+
+    /**
+     * Finds the next slot where a player has a token, for going over the tokens of a player without copying them.
+     *
+     * @param player - the player whose tokens are searched
+     * @param from   - the slot to start the search from (inclusive)
+     * @return       - the first slot from the given one on where the player has a token, or -1 if none
+     */
+    public int nextToken(int player, int from){
+        int word = from >>> 6;
+        if (word >= slotWords)
+            return -1;
+        long slots = playerTokens.get(player * slotWords + word) & -1L << from;
+        while (slots == 0) {
+            if (++word == slotWords)
+                return -1;
+            slots = playerTokens.get(player * slotWords + word);
+        }
+        return (word << 6) + Long.numberOfTrailingZeros(slots);
+    }
+
     /**
      * Retrieves all slots where a specific player has placed a token.
      *
@@ -208,13 +332,30 @@ public class Table {
      */
     public List<Integer> getPlayerTokens(int player){
         List<Integer> tokens = new ArrayList<>();
-        for (int i = 0; i < table.length; i++) {
-            if (table[i].getPlayerToken().contains(player))
-                tokens.add(i);
-        }
+        for (int slot = nextToken(player, 0); slot >= 0; slot = nextToken(player, slot + 1))
+            tokens.add(slot);
         return tokens;
     }
 
+    /**
+     * Retrieves 64 of the slots where a specific player has placed a token, straight from the bitmap of the player
+     * (the slots are gone over by Long.numberOfTrailingZeros without copying the bitmap).
+     *
+     * @param player - the player whose token slots are to be retrieved
+     * @param word   - the index of the 64 slots (between 0 and getSlotWords() - 1)
+     * @return       - a bit per slot where the player has a token (bit i is slot word * 64 + i)
+     */
+    public long getPlayerTokenWord(int player, int word){
+        return playerTokens.get(player * slotWords + word);
+    }
+
+    /**
+     * @return - the number of 64 slot words in the bitmap of the tokens of a player.
+     */
+    public int getSlotWords(){
+        return slotWords;
+    }
+
     /**
      * Gets the Slot object at a specific index in the table.
      *
@@ -239,22 +380,142 @@ public class Table {
         return cards;
     }
 
+    /**
+     * Retrieves all cards currently placed in slots on the table as a bitmap of card ids.
+     *
+     * @return - a bitmap of the cards currently on the table
+     */
+    public BitSet getTableCardBits() {
+        synchronized (setsLock) {
+            return (BitSet) onTable.clone();
+        }
+    }
+
+    /**
+     * Checks if the cards on the table contain a legal set.
+     *
+     * @return - true iff there is at least one legal set on the table.
+     */
+    public boolean hasSet() {
+        synchronized (setsLock) {
+            return liveCount > 0;
+        }
+    }
+
+    /**
+     * Counts the legal sets on the table.
+     *
+     * @return - the number of legal sets on the table.
+     */
+    public int countSets() {
+        synchronized (setsLock) {
+            return liveCount;
+        }
+    }
+
+    /**
+     * Retrieves all legal sets on the table.
+     *
+     * @return - a list of integer arrays, each one contains the card ids of a legal set on the table.
+     */
+    public List<int[]> getSets() {
+        SetIndex index = env.util.setIndex();
+        List<int[]> sets = new ArrayList<>();
+        synchronized (setsLock) {
+            for (int i = 0; i < liveCount; ++i) {
+                int[] cards = new int[env.config.featureSize];
+                for (int j = 0; j < cards.length; ++j)
+                    cards[j] = index.card(liveSets[i], j);
+                sets.add(cards);
+            }
+        }
+        return sets;
+    }
+
+    /**
+     * Copies the cards on the table and the legal sets among them, at once.
+     * The copy is made once per change of the table (by the first caller) and shared until the next change.
+     *
+     * @return - a snapshot of the table (the cards and sets come from the sets kept up to date on every change, so
+     *           nothing is searched).
+     */
+    public TableSnapshot snapshot() {
+        TableSnapshot last = snapshot;
+        if (last != null)
+            return last;
+        SetIndex index = env.util.setIndex();
+        synchronized (setsLock) {
+            if (snapshot == null) {
+                int[] cards = new int[table.length];
+                Arrays.fill(cards, -1);
+                for (int card = onTable.nextSetBit(0); card >= 0; card = onTable.nextSetBit(card + 1))
+                    cards[cardToSlot[card]] = card;
+                int[] setSlots = new int[liveCount * index.setSize()];
+                for (int i = 0; i < setSlots.length; ++i)
+                    setSlots[i] = cardToSlot[index.card(liveSets[i / index.setSize()], i % index.setSize())];
+                snapshot = new TableSnapshot(cards, setSlots, index.setSize());
+            }
+            return snapshot;
+        }
+    }
+
+    /**
+     * Adds the sets completed by a card placed on the table (only the sets containing the card can be completed).
+     *
+     * @param card - the card placed on the table.
+     */
+    private void addLiveSets(int card) {
+        SetIndex index = env.util.setIndex();
+        synchronized (setsLock) {
+            snapshot = null;
+            onTable.set(card);
+            for (int i = 0; i < index.setsOf(card); ++i) {
+                int set = index.setOf(card, i);
+                if (index.isPresent(set, onTable)) {
+                    if (liveCount == liveSets.length)
+                        liveSets = Arrays.copyOf(liveSets, liveCount * 2 + 1);
+                    liveSets[liveCount++] = set;
+                }
+            }
+        }
+    }
+
+    /**
+     * Drops the sets broken by cards removed from the table (keeping the order of the others).
+     *
+     * @param cards - the cards removed from the table.
+     */
+    private void removeLiveSets(int... cards) {
+        SetIndex index = env.util.setIndex();
+        synchronized (setsLock) {
+            snapshot = null;
+            for (int card : cards)
+                onTable.clear(card);
+            int kept = 0;
+            for (int i = 0; i < liveCount; ++i) {
+                if (index.isPresent(liveSets[i], onTable))
+                    liveSets[kept++] = liveSets[i];
+            }
+            liveCount = kept;
+        }
+    }
+
+    private static void setBit(AtomicLongArray bits, int word, long bit) {
+        bits.getAndAccumulate(word, bit, (current, set) -> current | set);
+    }
+
+    private static void clearBit(AtomicLongArray bits, int word, long bit) {
+        bits.getAndAccumulate(word, ~bit, (current, kept) -> current & kept);
+    }
+
     /**
      * Inserts a player ID into the queue if it's their third click.
      * Ensures no duplicates.
      *
      * @param playerId - the player ID to insert
      */
-    public synchronized void insertPlayerThirdClick(Integer playerId){
-        boolean contains = false;
-        if (!queue.isEmpty()) {
-            for(int i : queue)
-                if (i == playerId)
-                    contains = true;
-        }
-        if (!contains) {
-            queue.add(playerId);
-        }
+    public void insertPlayerThirdClick(Integer playerId){
+        queue.offer(playerId);
     }
 
     /**
@@ -262,9 +523,8 @@ public class Table {
      *
      * @return - the first player ID in the queue, or null if empty
      */
-    public synchronized Integer pollFirstClick(){
-        return queue.poll();
+    public Integer pollFirstClick(){
+        int player = queue.poll();
+        return player < 0 ? null : player;
     }
-} 
-
-
+}
@@ -0,0 +1,71 @@
+package bguspl.set.ex;
+
+import java.util.Arrays;
+
+/**
+ * A copy of the cards on the table and of the legal sets among them, all taken at the same moment (see
+ * Table::snapshot), for the computer players to look at without locking the table or searching for sets.
+ *
+ * @inv setSlots.length % setSize == 0
+ */
+public class TableSnapshot {
+
+    /**
+     * The card in every slot (-1 if none).
+     */
+    private final int[] cards;
+
+    /**
+     * The slots of the legal sets on the table, setSize slots per set (in the order the sets appeared on the table).
+     */
+    private final int[] setSlots;
+    private final int setSize;
+
+    /**
+     * @param cards    - the card in every slot (-1 if none).
+     * @param setSlots - the slots of the legal sets, setSize slots per set.
+     * @param setSize  - the number of cards in a set.
+     */
+    TableSnapshot(int[] cards, int[] setSlots, int setSize) {
+        this.cards = cards;
+        this.setSlots = setSlots;
+        this.setSize = setSize;
+    }
+
+    /**
+     * @return - the number of slots on the table.
+     */
+    public int size() {
+        return cards.length;
+    }
+
+    /**
+     * @param slot - the slot.
+     * @return - the card in the slot, or -1 if the slot is empty.
+     */
+    public int card(int slot) {
+        return cards[slot];
+    }
+
+    /**
+     * @return - the number of legal sets on the table.
+     */
+    public int setCount() {
+        return setSlots.length / setSize;
+    }
+
+    /**
+     * @param set - the set (between 0 and setCount() - 1).
+     * @return - the slots of the cards of the set.
+     */
+    public int[] set(int set) {
+        return Arrays.copyOfRange(setSlots, set * setSize, (set + 1) * setSize);
+    }
+
+    /**
+     * @return - the number of cards in a set.
+     */
+    public int setSize() {
+        return setSize;
+    }
+}
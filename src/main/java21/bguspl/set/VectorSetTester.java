@@ -0,0 +1,37 @@
+package bguspl.set;
+
+import jdk.incubator.vector.LongVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * The PackedSetTester of the Vector API: every lane checks one group, the cards of the groups being gathered from the
+ * packed features by their ids. It is only built by the jdk21 profile and only loaded (by UtilImpl) when the JVM runs
+ * with the jdk.incubator.vector module.
+ */
+class VectorSetTester implements PackedSetTester {
+
+    private static final VectorSpecies<Long> SPECIES = LongVector.SPECIES_PREFERRED;
+
+    @Override
+    public int testSets(long[] packed, long fieldValues, long fieldGuards, int[] a, int[] b, int[] c, long[] words) {
+        int lanes = SPECIES.length();
+        int bound = SPECIES.loopBound(a.length);
+        for (int i = 0; i < bound; i += lanes) {
+            LongVector x = LongVector.fromArray(SPECIES, packed, 0, a, i);
+            LongVector y = LongVector.fromArray(SPECIES, packed, 0, b, i);
+            LongVector z = LongVector.fromArray(SPECIES, packed, 0, c, i);
+            LongVector sameSame = x.and(y).and(z).add(fieldValues).and(fieldGuards);
+            LongVector missing = x.or(y).or(z).lanewise(VectorOperators.XOR, fieldValues).add(fieldValues)
+                    .and(fieldGuards);
+            long legal = missing.and(sameSame.not()).compare(VectorOperators.EQ, 0).toLong();
+
+            // the lanes of a vector may straddle two bitmap words when their number does not divide 64
+            int bit = i % Long.SIZE;
+            words[i / Long.SIZE] |= legal << bit;
+            if (bit + lanes > Long.SIZE)
+                words[i / Long.SIZE + 1] |= legal >>> (Long.SIZE - bit);
+        }
+        return bound;
+    }
+}
@@ -0,0 +1,106 @@
+package bguspl.set;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.util.Properties;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MappedSetIndexTest {
+
+    private static final FileTime OLD = FileTime.fromMillis(0);
+
+    @TempDir
+    Path directory;
+
+    Logger logger;
+    Config config;
+    Util util;
+    Path file;
+
+    // the index kept on the heap, which the file must always match
+    SetIndex expected;
+
+    @BeforeEach
+    void setUp() {
+        logger = Logger.getLogger("MappedSetIndexTest");
+        logger.setUseParentHandlers(false);
+        Properties properties = new Properties();
+        properties.setProperty("FeatureCount", "4");
+        properties.setProperty("SetIndexDirectory", directory.toString());
+        config = new Config(logger, properties);
+        util = new UtilImpl(config, logger);
+        file = directory.resolve("sets-3x4.idx");
+        expected = new SetIndexImpl(config, util);
+    }
+
+    /**
+     * The index of a set index directory is generated into it on first use, then reopened as is.
+     */
+    @Test
+    void createdThenReopened() throws IOException {
+        SetIndex created = util.setIndex();
+        assertTrue(created instanceof MappedSetIndex);
+        assertTrue(Files.isRegularFile(file));
+        assertSameIndex(created);
+
+        Files.setLastModifiedTime(file, OLD);
+        assertSameIndex(MappedSetIndex.open(file, config, util));
+        assertEquals(OLD, Files.getLastModifiedTime(file), "the valid file was generated again");
+    }
+
+    @Test
+    void otherVersionIsGeneratedAgain() throws IOException {
+        MappedSetIndex.open(file, config, util);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            ByteBuffer version = ByteBuffer.allocate(Integer.BYTES).order(ByteOrder.LITTLE_ENDIAN).putInt(0, 99);
+            channel.write(version, Integer.BYTES);
+        }
+        Files.setLastModifiedTime(file, OLD);
+        assertSameIndex(MappedSetIndex.open(file, config, util));
+        assertNotEquals(OLD, Files.getLastModifiedTime(file));
+    }
+
+    @Test
+    void truncatedFileIsGeneratedAgain() throws IOException {
+        MappedSetIndex.open(file, config, util);
+        long size = Files.size(file);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.truncate(size - Integer.BYTES);
+        }
+        assertSameIndex(MappedSetIndex.open(file, config, util));
+        assertEquals(size, Files.size(file));
+
+        // down to a partial header
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.truncate(Integer.BYTES * 3);
+        }
+        assertSameIndex(MappedSetIndex.open(file, config, util));
+        assertEquals(size, Files.size(file));
+    }
+
+    //compares the sets, the cards of every set and the sets of every card with the index kept on the heap
+    private void assertSameIndex(SetIndex actual) {
+        assertEquals(expected.setCount(), actual.setCount());
+        assertEquals(expected.setSize(), actual.setSize());
+        for (int set = 0; set < expected.setCount(); ++set)
+            for (int i = 0; i < expected.setSize(); ++i)
+                assertEquals(expected.card(set, i), actual.card(set, i), "card " + i + " of set " + set);
+        for (int card = 0; card < config.deckSize; ++card) {
+            assertEquals(expected.setsOf(card), actual.setsOf(card), "sets of card " + card);
+            for (int i = 0; i < expected.setsOf(card); ++i)
+                assertEquals(expected.setOf(card, i), actual.setOf(card, i), "set " + i + " of card " + card);
+        }
+    }
+}
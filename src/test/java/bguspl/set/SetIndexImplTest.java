@@ -0,0 +1,148 @@
+package bguspl.set;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.BitSet;
+import java.util.List;
+import java.util.Properties;
+import java.util.Random;
+import java.util.logging.Logger;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SetIndexImplTest {
+
+    Logger logger;
+
+    @BeforeEach
+    void setUp() {
+        logger = Logger.getLogger("SetIndexImplTest");
+        logger.setUseParentHandlers(false);
+    }
+
+    private Config config(int featureCount, String setFinder) {
+        Properties properties = new Properties();
+        properties.setProperty("FeatureCount", String.valueOf(featureCount));
+        properties.setProperty("SetFinder", setFinder);
+        return new Config(logger, properties);
+    }
+
+    @Test
+    void indexOfFourFeatures() {
+        checkIndex(4, 1080, true);
+    }
+
+    @Test
+    void indexOfFiveFeatures() {
+        checkIndex(5, 9801, true);
+    }
+
+    @Test
+    void indexOfSixFeatures() {
+        checkIndex(6, 88452, false);
+    }
+
+    /**
+     * The sets the index finds among random collections of present cards are the ones (in the same order) a
+     * combinatorial findSets finds among the same cards sorted by id.
+     */
+    @Test
+    void presentSetsMatchCombinatorial() {
+        Config config = config(5, "closure");
+        SetIndex index = new SetIndexImpl(config, new UtilImpl(config, logger));
+        Util combinatorial = new UtilImpl(config(5, "combinatorial"), logger);
+        Random random = new Random(3);
+        for (int round = 0; round < 50; ++round) {
+            BitSet present = new BitSet(config.deckSize);
+            for (int i = random.nextInt(60); i > 0; --i)
+                present.set(random.nextInt(config.deckSize));
+            List<int[]> expected = combinatorial.findSets(present.stream().toArray(), Integer.MAX_VALUE);
+            List<int[]> actual = index.findSets(present, Integer.MAX_VALUE);
+            assertEquals(expected.size(), actual.size(), "round " + round);
+            for (int set = 0; set < expected.size(); ++set)
+                assertArrayEquals(expected.get(set), actual.get(set), "round " + round + ", set " + set);
+        }
+    }
+
+    /**
+     * Builds the index of the full deck (with the default set finder) and checks it, then reports the build time and
+     * the size of the index arrays. With combinatorial, the index is compared against a plain combinatorial findSets of
+     * the deck, which lists the sets in the same lexicographic order; otherwise (the C(deckSize, 3) scan of 6 features
+     * takes half a minute) every set is checked legal and in lexicographic order after the previous one, and random
+     * pairs of cards are checked to share exactly one set.
+     */
+    private void checkIndex(int featureCount, int setCount, boolean combinatorial) {
+        Config config = config(featureCount, "closure");
+        Util util = new UtilImpl(config, logger);
+        long start = System.nanoTime();
+        SetIndex index = new SetIndexImpl(config, util);
+        long elapsed = System.nanoTime() - start;
+
+        assertEquals(setCount, index.setCount());
+        if (combinatorial) {
+            List<int[]> sets = new UtilImpl(config(featureCount, "combinatorial"), logger)
+                    .findSets(IntStream.range(0, config.deckSize).toArray(), Integer.MAX_VALUE);
+            assertEquals(sets.size(), index.setCount());
+            for (int set = 0; set < sets.size(); ++set)
+                for (int i = 0; i < index.setSize(); ++i)
+                    assertEquals(sets.get(set)[i], index.card(set, i), "card " + i + " of set " + set);
+        } else {
+            // setCount distinct legal sets are all the sets of the deck
+            for (int set = 0; set < setCount; ++set) {
+                int[] cards = cards(index, set);
+                assertTrue(util.testSet(cards), "set " + set + " is legal");
+                assertTrue(set == 0 || compare(cards(index, set - 1), cards) < 0, "set " + set + " follows set " + (set - 1));
+            }
+            Random random = new Random(6);
+            for (int pair = 0; pair < 10000; ++pair) {
+                int first = random.nextInt(config.deckSize);
+                int second = random.nextInt(config.deckSize - 1);
+                if (second >= first) ++second;
+                int shared = 0;
+                for (int i = 0; i < index.setsOf(first); ++i)
+                    if (contains(index, index.setOf(first, i), second)) ++shared;
+                assertEquals(1, shared, "sets of cards " + first + " and " + second);
+            }
+        }
+
+        // every set is listed, in ascending order, by each of its cards
+        int listed = 0;
+        for (int card = 0; card < config.deckSize; ++card) {
+            for (int i = 0; i < index.setsOf(card); ++i) {
+                int set = index.setOf(card, i);
+                assertTrue(i == 0 || index.setOf(card, i - 1) < set);
+                assertTrue(contains(index, set, card), "set " + set + " listed by card " + card);
+            }
+            listed += index.setsOf(card);
+        }
+        assertEquals(setCount * index.setSize(), listed);
+
+        // members and cardSets hold an int per card of every set, offsets an int per card of the deck (plus one)
+        long ints = 2L * setCount * index.setSize() + config.deckSize + 1;
+        System.out.printf("set index of %d features: %d sets of %d cards built in %.1f ms, arrays of %d ints (%.2f MB)%n",
+                featureCount, setCount, config.deckSize, elapsed / 1e6, ints, ints * 4 / 1e6);
+    }
+
+    private static int[] cards(SetIndex index, int set) {
+        int[] cards = new int[index.setSize()];
+        for (int i = 0; i < cards.length; ++i)
+            cards[i] = index.card(set, i);
+        return cards;
+    }
+
+    //lexicographic comparison of two sets of the same size
+    private static int compare(int[] a, int[] b) {
+        for (int i = 0; i < a.length; ++i)
+            if (a[i] != b[i]) return Integer.compare(a[i], b[i]);
+        return 0;
+    }
+
+    private static boolean contains(SetIndex index, int set, int card) {
+        for (int i = 0; i < index.setSize(); ++i)
+            if (index.card(set, i) == card)
+                return true;
+        return false;
+    }
+}
@@ -0,0 +1,72 @@
+package bguspl.set;
+
+import bguspl.set.ex.Player;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Properties;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SimulationTest {
+
+    private static final long GAME_TIMEOUT_MILLIS = 10_000;
+
+    Logger logger;
+    Properties properties;
+
+    @BeforeEach
+    void setUp() {
+        logger = Logger.getLogger("SimulationTest");
+        logger.setUseParentHandlers(false);
+        // the settings of the simulation mode: computer players only and no delays
+        properties = new Properties();
+        properties.setProperty("LogLevel", "OFF");
+        properties.setProperty("HumanPlayers", "0");
+        properties.setProperty("Hints", "False");
+        properties.setProperty("TurnTimeoutSeconds", "0");
+        properties.setProperty("TableDelaySeconds", "0");
+        properties.setProperty("PointFreezeSeconds", "0");
+        properties.setProperty("PenaltyFreezeSeconds", "0");
+        properties.setProperty("ComputerDelaySeconds", "0");
+        properties.setProperty("EndGamePauseSeconds", "0");
+    }
+
+    /**
+     * Many perfect players racing for the same sets make many claims that lose their cards to another claim, or are
+     * made on a selection that changed meanwhile: every game still ends in time (Main.simulateGame fails otherwise).
+     */
+    @Test
+    void perfectPlayersFinishEveryGame() throws InterruptedException {
+        properties.setProperty("ComputerPlayers", "8");
+        properties.setProperty("ComputerStrategy", "perfect");
+        runGames(500);
+    }
+
+    @Test
+    void randomPlayersFinishEveryGame() throws InterruptedException {
+        properties.setProperty("ComputerPlayers", "4");
+        properties.setProperty("ComputerStrategy", "random");
+        runGames(100);
+    }
+
+    private void runGames(int games) throws InterruptedException {
+        Util util = null;
+        for (int game = 0; game < games; ++game) {
+            properties.setProperty("DeckSeed", String.valueOf(game));
+            Config config = new Config(logger, properties);
+            if (util == null)
+                util = new UtilImpl(config, logger);
+            Env env = new Env(logger, config, new UserInterfaceHeadless(), util);
+            Player[] players = new Player[config.players];
+            Main.simulateGame(env, players, GAME_TIMEOUT_MILLIS);
+
+            int sets = 0;
+            for (Player player : players)
+                sets += player.getScore();
+            assertTrue(sets > 0, "game " + game + " collected no set");
+            assertTrue(sets <= config.deckSize / config.featureSize, "game " + game + " collected " + sets + " sets");
+        }
+    }
+}
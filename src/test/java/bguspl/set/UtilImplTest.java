@@ -0,0 +1,188 @@
+package bguspl.set;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+import java.util.Random;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+class UtilImplTest {
+
+    private static final String[] SET_FINDERS = {"closure", "pruning", "combinatorial"};
+
+    Logger logger;
+    List<Integer> deck;
+
+    @BeforeEach
+    void setUp() {
+        logger = Logger.getLogger("UtilImplTest");
+        logger.setUseParentHandlers(false);
+        deck = new ArrayList<>();
+        for (int card = 0; card < 243; ++card)
+            deck.add(card);
+        Collections.shuffle(deck, new Random(1));
+    }
+
+    private Util util(String setFinder, int parallelism) {
+        Properties properties = new Properties();
+        properties.setProperty("FeatureCount", "5");
+        properties.setProperty("SetFinder", setFinder);
+        properties.setProperty("FindSetsParallelism", String.valueOf(parallelism));
+        properties.setProperty("FindSetsOrdered", "True");
+        return new UtilImpl(new Config(logger, properties), logger);
+    }
+
+    /**
+     * Every number of workers from 1 to the number of processors (at least 4) finds the same sets, in the same order,
+     * as the sequential search, both all of them and only the first few (where the workers stop early).
+     */
+    @Test
+    void parallelSearchScalesLikeSequential() {
+        int workers = Math.max(4, Runtime.getRuntime().availableProcessors());
+        for (String setFinder : SET_FINDERS) {
+            Util sequential = util(setFinder, 1);
+            List<int[]> all = sequential.findSets(deck, Integer.MAX_VALUE);
+            List<int[]> first = sequential.findSets(deck, 5);
+            assertEquals(9801, all.size(), setFinder);
+            assertEquals(5, first.size(), setFinder);
+
+            for (int parallelism = 1; parallelism <= workers; ++parallelism) {
+                Util parallel = util(setFinder, parallelism);
+                long start = System.nanoTime();
+                assertSameSets(all, parallel.findSets(deck, Integer.MAX_VALUE), setFinder + " x" + parallelism);
+                long elapsed = System.nanoTime() - start;
+                assertSameSets(first, parallel.findSets(deck, 5), setFinder + " x" + parallelism + " first 5");
+                System.out.printf("%s search of %d cards with %d workers: %.1f ms%n", setFinder, deck.size(),
+                        parallelism, elapsed / 1e6);
+            }
+        }
+    }
+
+    /**
+     * The closure and pruning searches find the same sets, in the same order, as the combinatorial search on random
+     * collections of cards, and a count below 1 finds one set like the original search did.
+     */
+    @Test
+    void closureMatchesCombinatorial() {
+        Util combinatorial = util("combinatorial", 1);
+        Random random = new Random(2);
+        for (int round = 0; round < 50; ++round) {
+            int[] cards = deck.subList(0, random.nextInt(40)).stream().mapToInt(Integer::intValue).toArray();
+            Collections.shuffle(deck, random);
+            List<int[]> expected = combinatorial.findSets(cards, Integer.MAX_VALUE);
+            for (String setFinder : SET_FINDERS) {
+                Util util = util(setFinder, 1);
+                assertSameSets(expected, util.findSets(cards, Integer.MAX_VALUE), setFinder + " round " + round);
+                assertSameSets(expected.subList(0, Math.min(1, expected.size())), util.findSets(cards, 0),
+                        setFinder + " round " + round + " count 0");
+            }
+        }
+    }
+
+    /**
+     * The batch check and the one group check agree with a plain comparison of the features of random groups of
+     * three cards, with the packed features (featureSize 3, on the Vector API when the JVM has it) and without them
+     * (featureSize 4).
+     */
+    @Test
+    void testSetsMatchesTestSet() {
+        for (int featureSize = 3; featureSize <= 4; ++featureSize) {
+            Properties properties = new Properties();
+            properties.setProperty("FeatureSize", String.valueOf(featureSize));
+            properties.setProperty("FeatureCount", "4");
+            Config config = new Config(logger, properties);
+            Util util = new UtilImpl(config, logger);
+
+            Random random = new Random(featureSize);
+            int groups = 1000;
+            int[] a = new int[groups], b = new int[groups], c = new int[groups];
+            for (int i = 0; i < groups; ++i) {
+                a[i] = random.nextInt(config.deckSize);
+                // every other group is made legal by its third card when the set size is 3
+                b[i] = random.nextInt(config.deckSize);
+                c[i] = i % 2 == 0 && featureSize == 3 ? third(util, a[i], b[i], config.deckSize) : random.nextInt(config.deckSize);
+            }
+            BitSet legal = util.testSets(a, b, c);
+            int count = 0;
+            for (int i = 0; i < groups; ++i) {
+                boolean expected = isSet(util, a[i], b[i], c[i]);
+                assertEquals(expected, legal.get(i), "featureSize " + featureSize + ", group " + i);
+                assertEquals(expected, util.testSet(a[i], b[i], c[i]), "featureSize " + featureSize + ", group " + i);
+                if (expected) ++count;
+            }
+            if (featureSize == 3)
+                assertTrue(count >= groups / 2 - 10, "legal groups: " + count);
+        }
+    }
+
+    /**
+     * Built by the jdk21 profile (which runs the tests with the jdk.incubator.vector module), the batch check runs on
+     * the Vector API: it agrees with the plain comparison of the features for batch sizes around the vector and word
+     * boundaries. Skipped on the other builds.
+     */
+    @Test
+    void vectorTestSetsMatchesFeatures() {
+        assumeTrue(vectorApi(), "built without the Vector API");
+        Properties properties = new Properties();
+        properties.setProperty("FeatureCount", "5");
+        Config config = new Config(logger, properties);
+        Util util = new UtilImpl(config, logger);
+        Random random = new Random(5);
+        for (int groups = 0; groups <= 200; ++groups) {
+            int[] a = new int[groups], b = new int[groups], c = new int[groups];
+            for (int i = 0; i < groups; ++i) {
+                a[i] = random.nextInt(config.deckSize);
+                b[i] = random.nextInt(config.deckSize);
+                c[i] = random.nextBoolean() ? third(util, a[i], b[i], config.deckSize) : random.nextInt(config.deckSize);
+            }
+            BitSet legal = util.testSets(a, b, c);
+            assertTrue(legal.length() <= groups, groups + " groups");
+            for (int i = 0; i < groups; ++i)
+                assertEquals(isSet(util, a[i], b[i], c[i]), legal.get(i), groups + " groups, group " + i);
+        }
+    }
+
+    //true iff the Vector API batch check was built and the JVM has its module
+    private static boolean vectorApi() {
+        try {
+            Class.forName("bguspl.set.VectorSetTester");
+            return true;
+        } catch (ClassNotFoundException | LinkageError e) {
+            return false;
+        }
+    }
+
+    //the card completing a legal set with two cards (itself if they are the same card)
+    private static int third(Util util, int first, int second, int deckSize) {
+        for (int card = 0; card < deckSize; ++card)
+            if (card != first && card != second && isSet(util, first, second, card))
+                return card;
+        return first;
+    }
+
+    //the rule of a legal set applied to the unpacked features: in every feature the values are all same or all different
+    private static boolean isSet(Util util, int... cards) {
+        int[][] features = util.cardsToFeatures(cards);
+        for (int i = 0; i < features[0].length; ++i) {
+            int finalI = i;
+            long distinct = Arrays.stream(features).mapToInt(card -> card[finalI]).distinct().count();
+            if (distinct != 1 && distinct != cards.length) return false;
+        }
+        return true;
+    }
+
+    private static void assertSameSets(List<int[]> expected, List<int[]> actual, String message) {
+        assertEquals(expected.size(), actual.size(), message);
+        for (int i = 0; i < expected.size(); ++i)
+            assertArrayEquals(expected.get(i), actual.get(i), message + ", set " + i);
+    }
+}
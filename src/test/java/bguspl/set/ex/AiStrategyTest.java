@@ -0,0 +1,80 @@
+package bguspl.set.ex;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.BitSet;
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AiStrategyTest {
+
+    TableSnapshot table;
+    SplittableRandom random;
+
+    @BeforeEach
+    void setUp() {
+        // 12 slots with a card each and a single legal set on them
+        int[] cards = new int[12];
+        for (int slot = 0; slot < cards.length; ++slot)
+            cards[slot] = slot;
+        table = new TableSnapshot(cards, new int[]{1, 3, 5}, 3);
+        random = new SplittableRandom(1);
+    }
+
+    private static BitSet slots(int... slots) {
+        BitSet bits = new BitSet();
+        for (int slot : slots)
+            bits.set(slot);
+        return bits;
+    }
+
+    @Test
+    void selectUnselectsFirst() {
+        assertArrayEquals(new int[]{11, 1, 5}, AiStrategy.select(new int[]{1, 3, 5}, slots(3, 11)));
+        assertArrayEquals(new int[]{7, 11, 1, 3, 5}, AiStrategy.select(new int[]{5, 3, 1}, slots(7, 11)));
+        assertArrayEquals(new int[]{1, 3, 5}, AiStrategy.select(new int[]{1, 3, 5}, new BitSet()));
+        assertArrayEquals(new int[0], AiStrategy.select(new int[]{1, 3, 5}, slots(1, 3, 5)));
+    }
+
+    /**
+     * A perfect player that starts with two wrong tokens (or any other selection of less than a set) claims the set it
+     * chose with its first full selection.
+     */
+    @Test
+    void perfectPlayerClaimsTheSetFromWrongTokens() {
+        AiStrategy strategy = new PerfectAiStrategy(0);
+        for (int first = 0; first < table.size(); ++first) {
+            for (int second = first; second < table.size(); ++second) {
+                BitSet selected = slots(first, second);
+                int[] keys = strategy.nextMove(table, selected, random).keys();
+                assertEquals(slots(1, 3, 5), press(selected, keys, 3), "from " + selected);
+            }
+        }
+    }
+
+    @Test
+    void humanPlayerClaimsItsSelectionFromWrongTokens() {
+        AiStrategy strategy = new HumanAiStrategy(1, 0);
+        assertEquals(slots(1, 3, 5), press(slots(3, 11), strategy.nextMove(table, slots(3, 11), random).keys(), 3));
+        assertEquals(slots(1, 3, 5), press(slots(5, 11), strategy.nextMove(table, slots(5, 11), random).keys(), 3));
+    }
+
+    /**
+     * Presses the keys the way the player does (a key of a selected slot unselects it, no slot is selected once the
+     * selection is full) and returns the first full selection, the claim (or the selection left if none was full).
+     */
+    private static BitSet press(BitSet selected, int[] keys, int setSize) {
+        BitSet selection = (BitSet) selected.clone();
+        for (int key : keys) {
+            if (selection.get(key))
+                selection.clear(key);
+            else if (selection.cardinality() < setSize)
+                selection.set(key);
+            if (selection.cardinality() == setSize)
+                return selection;
+        }
+        return selection;
+    }
+}
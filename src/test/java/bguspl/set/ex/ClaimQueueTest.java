@@ -0,0 +1,160 @@
+package bguspl.set.ex;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ClaimQueueTest {
+
+    private static final int PLAYERS = 100;
+
+    ClaimQueue queue;
+
+    @BeforeEach
+    void setUp() {
+        queue = new ClaimQueue(PLAYERS);
+    }
+
+    @Test
+    void claimsAreTakenOutInOrder() {
+        assertTrue(queue.offer(3));
+        assertTrue(queue.offer(70));
+        assertTrue(queue.offer(0));
+
+        assertEquals(3, queue.poll());
+        assertEquals(70, queue.poll());
+        assertEquals(0, queue.poll());
+        assertEquals(-1, queue.poll());
+        assertTrue(queue.isEmpty());
+    }
+
+    @Test
+    void playerIsQueuedOnce() {
+        assertTrue(queue.offer(65));
+        assertFalse(queue.offer(65));
+        assertTrue(queue.contains(65));
+        assertEquals(1, queue.size());
+
+        assertEquals(65, queue.poll());
+        assertFalse(queue.contains(65));
+        assertTrue(queue.offer(65));
+    }
+
+    @Test
+    void pollTimesOutWhenEmpty() throws InterruptedException {
+        long start = System.nanoTime();
+        assertEquals(-1, poll(20, TimeUnit.MILLISECONDS));
+        assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(20));
+    }
+
+    /**
+     * Waiting with no timeout (see take) lasts until a claim is added or the dealer thread is woken up, and a wake-up
+     * before the wait makes it return at once.
+     */
+    @Test
+    @Timeout(value = 10, threadMode = Timeout.ThreadMode.SEPARATE_THREAD)
+    void takeWaitsForClaimOrWakeUp() throws InterruptedException {
+        Thread offer = new Thread(() -> {
+            sleep(20);
+            queue.offer(7);
+        });
+        offer.start();
+        assertEquals(7, take());
+        offer.join();
+
+        Thread wakeUp = new Thread(() -> {
+            sleep(20);
+            queue.wakeUp();
+        });
+        wakeUp.start();
+        assertEquals(-1, take());
+        wakeUp.join();
+
+        queue.wakeUp();
+        assertEquals(-1, take());
+    }
+
+    //takes out the first claim the way the dealer does, waiting for it as long as needed (-1 if woken up instead)
+    private int take() throws InterruptedException {
+        queue.await();
+        return queue.poll();
+    }
+
+    //takes out the first claim the way the dealer does, waiting for it until the timeout (-1 if none came or woken up)
+    private int poll(long timeout, TimeUnit unit) throws InterruptedException {
+        queue.await(timeout, unit);
+        return queue.poll();
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException ignored) {}
+    }
+
+    /**
+     * Several producers offer the claims of the same players over and over (so most offers are duplicates of a claim
+     * still in the queue) while a single consumer takes them out: every accepted claim is taken out exactly once.
+     */
+    @Test
+    @Timeout(value = 60, threadMode = Timeout.ThreadMode.SEPARATE_THREAD)
+    void noClaimIsLostOrDuplicated() throws InterruptedException {
+        int producers = 8;
+        int offers = 200_000;
+        // counted before the offer (and uncounted if it was refused), so a claim is never taken out before it counts
+        AtomicIntegerArray accepted = new AtomicIntegerArray(PLAYERS);
+        int[] consumed = new int[PLAYERS];
+
+        Thread[] threads = new Thread[producers];
+        for (int i = 0; i < producers; ++i) {
+            int producer = i;
+            threads[i] = new Thread(() -> {
+                for (int offer = 0; offer < offers; ++offer) {
+                    // every player is offered by two producers, in a different order
+                    int player = (offer * (producer % 2 == 0 ? 1 : 7) + producer / 2 * 25) % PLAYERS;
+                    accepted.incrementAndGet(player);
+                    if (!queue.offer(player))
+                        accepted.decrementAndGet(player);
+                    if (offer % 16 == 0)
+                        Thread.yield(); // interleave with the other producers and the consumer
+                }
+            }, "producer-" + i);
+            threads[i].setDaemon(true);
+        }
+        for (Thread thread : threads)
+            thread.start();
+
+        while (anyAlive(threads) || !queue.isEmpty()) {
+            int player = poll(10, TimeUnit.MILLISECONDS);
+            if (player < 0)
+                continue;
+            assertTrue(player < PLAYERS, "unknown player " + player);
+            ++consumed[player];
+            assertTrue(consumed[player] <= accepted.get(player), "claim of player " + player + " taken out twice");
+        }
+        for (Thread thread : threads)
+            thread.join();
+
+        long total = 0;
+        for (int player = 0; player < PLAYERS; ++player) {
+            assertEquals(accepted.get(player), consumed[player], "claims of player " + player);
+            total += consumed[player];
+        }
+        assertTrue(total > PLAYERS);
+        assertEquals(-1, queue.poll());
+        for (int player = 0; player < PLAYERS; ++player)
+            assertFalse(queue.contains(player), "player " + player + " is still marked as queued");
+    }
+
+    private static boolean anyAlive(Thread[] threads) {
+        for (Thread thread : threads)
+            if (thread.isAlive())
+                return true;
+        return false;
+    }
+}
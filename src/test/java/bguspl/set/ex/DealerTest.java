@@ -0,0 +1,74 @@
+package bguspl.set.ex;
+
+import bguspl.set.Config;
+import bguspl.set.Env;
+import bguspl.set.UserInterfaceHeadless;
+import bguspl.set.Util;
+import bguspl.set.UtilImpl;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Properties;
+import java.util.Random;
+import java.util.Set;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DealerTest {
+
+    Logger logger;
+    Properties properties;
+    Util util;
+
+    @BeforeEach
+    void setUp() {
+        logger = Logger.getLogger("DealerTest");
+        logger.setUseParentHandlers(false);
+        properties = new Properties();
+        properties.setProperty("LogLevel", "OFF");
+        properties.setProperty("HumanPlayers", "0");
+        properties.setProperty("ComputerPlayers", "0");
+        properties.setProperty("Hints", "False");
+        properties.setProperty("DealingStrategy", "smart");
+        util = new UtilImpl(new Config(logger, properties), logger);
+    }
+
+    /**
+     * With the smart dealing strategy, the table has a legal set after every deal (the first one, and the ones filling
+     * the slots of the cards taken), and the cards dealt to complete it go to random empty slots rather than always the
+     * same ones.
+     */
+    @Test
+    void smartDealingLeavesASetInRandomSlots() {
+        Random random = new Random(17);
+        Set<String> setSlots = new HashSet<>();
+        int deals = 0;
+        int firstSlots = 0;
+        for (int game = 0; game < 100; ++game) {
+            properties.setProperty("DeckSeed", String.valueOf(game));
+            Env env = new Env(logger, new Config(logger, properties), new UserInterfaceHeadless(), util);
+            Table table = new Table(env);
+            Dealer dealer = new Dealer(env, table, new Player[0]);
+            for (int deal = 0; deal < 10; ++deal) {
+                dealer.placeCardsOnTable();
+                assertEquals(table.getLength(), table.countCards(), "game " + game + ", deal " + deal);
+                assertTrue(table.hasSet(), "game " + game + ", deal " + deal);
+                ++deals;
+                for (int[] set : table.getSets()) {
+                    int[] slots = Arrays.stream(set).map(table::cardToSlot).sorted().toArray();
+                    setSlots.add(Arrays.toString(slots));
+                    if (Arrays.equals(slots, new int[]{0, 1, 2}))
+                        ++firstSlots;
+                }
+                // take three cards off the table, the next deal fills their slots
+                while (table.countCards() > table.getLength() - 3)
+                    dealer.removeSingleCard(random.nextInt(table.getLength()));
+            }
+        }
+        assertTrue(firstSlots < deals / 10, "a set in the first slots in " + firstSlots + " of " + deals + " deals");
+        assertTrue(setSlots.size() > 100, "sets in " + setSlots.size() + " different slots");
+    }
+}
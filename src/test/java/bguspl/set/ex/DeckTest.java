@@ -0,0 +1,86 @@
+package bguspl.set.ex;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.BitSet;
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DeckTest {
+
+    private static final int DECK_SIZE = 81;
+
+    Deck deck;
+
+    @BeforeEach
+    void setUp() {
+        deck = new Deck(DECK_SIZE, new SplittableRandom(7));
+    }
+
+    @Test
+    void drawsEveryCardOnce() {
+        BitSet drawn = new BitSet(DECK_SIZE);
+        for (int left = DECK_SIZE; left > 0; --left) {
+            assertEquals(left, deck.size());
+            int card = deck.draw();
+            assertFalse(drawn.get(card), "card " + card + " drawn twice");
+            assertFalse(deck.contains(card));
+            drawn.set(card);
+        }
+        assertTrue(deck.isEmpty());
+        assertEquals(DECK_SIZE, drawn.cardinality());
+    }
+
+    /**
+     * Specific cards drawn are never drawn at random, and cards returned to the deck are drawn again.
+     */
+    @Test
+    void drawnAndReturnedCards() {
+        deck.draw(0);
+        deck.draw(40);
+        deck.draw(80);
+        assertFalse(deck.contains(40));
+        assertEquals(DECK_SIZE - 3, deck.size());
+        deck.returnCard(40);
+        assertTrue(deck.contains(40));
+
+        BitSet drawn = new BitSet(DECK_SIZE);
+        while (!deck.isEmpty())
+            drawn.set(deck.draw());
+        assertEquals(DECK_SIZE - 2, drawn.cardinality());
+        assertFalse(drawn.get(0));
+        assertTrue(drawn.get(40));
+        assertFalse(drawn.get(80));
+    }
+
+    @Test
+    void findLeavesTheDeckAsIs() {
+        deck.draw(5);
+        assertEquals(-1, deck.find(card -> card == 5));
+        assertEquals(17, deck.find(card -> card == 17));
+        int even = deck.find(card -> card % 2 == 0);
+        assertEquals(0, even % 2);
+        assertEquals(-1, deck.find(card -> false));
+
+        assertEquals(DECK_SIZE - 1, deck.size());
+        for (int card = 0; card < DECK_SIZE; ++card)
+            assertEquals(card != 5, deck.contains(card), "card " + card);
+    }
+
+    /**
+     * Of two cards that satisfy the condition, the one that sits right after a long run of cards that do not is not
+     * found more often than the other.
+     */
+    @Test
+    void findTriesTheCardsInRandomOrder() {
+        int finds = 10000;
+        int last = 0;
+        for (int i = 0; i < finds; ++i)
+            if (deck.find(card -> card == 0 || card == DECK_SIZE - 1) == DECK_SIZE - 1)
+                ++last;
+        assertTrue(last > finds * 0.45 && last < finds * 0.55, last + " of " + finds);
+        assertEquals(-1, new Deck(0, new SplittableRandom(7)).find(card -> true));
+    }
+}
@@ -0,0 +1,119 @@
+package bguspl.set.ex;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class KeyQueueTest {
+
+    private static final int CAPACITY = 3;
+
+    KeyQueue queue;
+
+    @BeforeEach
+    void setUp() {
+        queue = new KeyQueue(CAPACITY);
+    }
+
+    /**
+     * Key presses added and taken out over many laps of the ring come out in the order (and with the times) they were
+     * pressed.
+     */
+    @Test
+    void keysWrapAroundInOrder() {
+        int next = 0;
+        int expected = 0;
+        long lastTime = 0;
+        for (int round = 0; round < 1000; ++round) {
+            for (int i = round % CAPACITY; i >= 0; --i)
+                assertTrue(queue.offer(next++));
+            while (!queue.isEmpty()) {
+                assertEquals(expected++, queue.poll());
+                assertTrue(queue.pressTime() >= lastTime);
+                lastTime = queue.pressTime();
+            }
+        }
+        assertEquals(next, expected);
+        assertEquals(-1, queue.poll());
+    }
+
+    @Test
+    void keyIsDroppedWhenFull() {
+        for (int slot = 0; slot < CAPACITY; ++slot)
+            assertTrue(queue.offer(slot));
+        assertFalse(queue.offer(CAPACITY));
+        assertEquals(CAPACITY, queue.size());
+
+        assertEquals(0, queue.poll());
+        assertTrue(queue.offer(7));
+        assertEquals(1, queue.poll());
+        assertEquals(2, queue.poll());
+        assertEquals(7, queue.poll());
+        assertEquals(-1, queue.poll());
+    }
+
+    /**
+     * The player thread clears the queue again and again while the input thread keeps pressing keys: the keys taken out
+     * still come out in the order they were pressed (none twice, none from before a clear that dropped it), and the
+     * queue never holds more than its capacity.
+     */
+    @Test
+    @Timeout(value = 60, threadMode = Timeout.ThreadMode.SEPARATE_THREAD)
+    void clearWhileKeysArePressed() throws InterruptedException {
+        int presses = 1_000_000;
+        // the key presses are numbered, the input thread publishes the last one it made after adding it
+        int[] pressed = {-1};
+        Thread input = new Thread(() -> {
+            for (int key = 0; key < presses; ++key) {
+                queue.offer(key);
+                synchronized (pressed) {
+                    pressed[0] = key;
+                }
+            }
+        }, "input");
+        input.setDaemon(true);
+        input.start();
+
+        int last = -1;
+        int taken = 0;
+        for (int step = 0; input.isAlive() || !queue.isEmpty(); ++step) {
+            int size = queue.size();
+            assertTrue(size >= 0 && size <= CAPACITY, "size " + size);
+            int before = -1;
+            if (step % 3 == 0) {
+                synchronized (pressed) {
+                    before = pressed[0];
+                }
+                queue.clear();
+            }
+            int key = queue.poll();
+            if (key < 0)
+                continue;
+            assertTrue(key > before, "key " + key + " pressed before a clear came out after it");
+            assertTrue(key > last, "key " + key + " after key " + last);
+            last = key;
+            ++taken;
+        }
+        input.join();
+        assertTrue(taken > 0);
+        assertEquals(-1, queue.poll());
+    }
+
+    @Test
+    @Timeout(value = 10, threadMode = Timeout.ThreadMode.SEPARATE_THREAD)
+    void awaitReturnsOnKeyPress() throws InterruptedException {
+        Thread input = new Thread(() -> {
+            try {
+                Thread.sleep(20);
+            } catch (InterruptedException ignored) {}
+            queue.offer(5);
+        });
+        input.start();
+        while (queue.isEmpty())
+            queue.await();
+        assertEquals(5, queue.poll());
+        input.join();
+    }
+}
@@ -0,0 +1,88 @@
+package bguspl.set.ex;
+
+import bguspl.set.Config;
+import bguspl.set.Env;
+import bguspl.set.UserInterfaceHeadless;
+import bguspl.set.UtilImpl;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class PlayerTest {
+
+    private static final long PENALTY_MILLIS = 300;
+
+    @Mock
+    Dealer dealer;
+
+    Logger logger;
+    Table table;
+    Player player;
+    Thread playerThread;
+
+    @BeforeEach
+    void setUp() {
+        logger = Logger.getLogger("PlayerTest");
+        logger.setUseParentHandlers(false);
+        Properties properties = new Properties();
+        properties.setProperty("LogLevel", "OFF");
+        properties.setProperty("HumanPlayers", "1");
+        properties.setProperty("ComputerPlayers", "0");
+        properties.setProperty("Hints", "False");
+        properties.setProperty("PenaltyFreezeSeconds", String.valueOf(PENALTY_MILLIS / 1000.0));
+        Config config = new Config(logger, properties);
+        Env env = new Env(logger, config, new UserInterfaceHeadless(), new UtilImpl(config, logger));
+        table = new Table(env);
+        for (int slot = 0; slot < table.getLength(); ++slot)
+            table.placeCard(slot, slot);
+        when(dealer.isCounting()).thenReturn(true);
+        player = new Player(env, dealer, table, 0, true);
+        playerThread = new Thread(player, "player-0");
+        playerThread.start();
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        player.terminate();
+        player.wakeUp();
+        playerThread.join();
+    }
+
+    /**
+     * A penalized player ignores its key presses until the freeze deadline (the keys are not even queued for later),
+     * and places tokens again from then on.
+     */
+    @Test
+    @Timeout(value = 10, threadMode = Timeout.ThreadMode.SEPARATE_THREAD)
+    void penalizedPlayerIgnoresKeysUntilTheDeadline() throws InterruptedException {
+        long start = System.nanoTime();
+        player.penalty();
+        assertTrue(player.onFreezed());
+        player.keyPressed(0);
+        player.keyPressed(1);
+        Thread.sleep(PENALTY_MILLIS / 3);
+        if (System.nanoTime() - start < TimeUnit.MILLISECONDS.toNanos(PENALTY_MILLIS))
+            assertEquals(0, table.countTokens(0), "a key pressed while frozen placed a token");
+
+        while (System.nanoTime() - start < TimeUnit.MILLISECONDS.toNanos(PENALTY_MILLIS))
+            Thread.sleep(10);
+        assertFalse(player.onFreezed());
+        assertEquals(0, table.countTokens(0), "a key pressed while frozen was kept for later");
+        player.keyPressed(2);
+        while (!table.hasToken(0, 2))
+            Thread.sleep(1);
+        assertEquals(1, table.countTokens(0));
+    }
+}
@@ -0,0 +1,66 @@
+package bguspl.set.ex;
+
+import bguspl.set.Config;
+import bguspl.set.Env;
+import bguspl.set.UserInterfaceHeadless;
+import bguspl.set.Util;
+import bguspl.set.UtilImpl;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+import java.util.Random;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SetOracleTest {
+
+    Logger logger;
+    Config config;
+    SetOracle oracle;
+
+    // counts the sets from scratch, without the set index the oracle counts with
+    Util combinatorial;
+
+    @BeforeEach
+    void setUp() {
+        logger = Logger.getLogger("SetOracleTest");
+        logger.setUseParentHandlers(false);
+        Properties properties = new Properties();
+        properties.setProperty("FeatureCount", "4");
+        config = new Config(logger, properties);
+        oracle = new SetOracle(new Env(logger, config, new UserInterfaceHeadless(), new UtilImpl(config, logger)));
+        properties.setProperty("SetFinder", "combinatorial");
+        combinatorial = new UtilImpl(new Config(logger, properties), logger);
+    }
+
+    /**
+     * Removing the cards of the deck one by one in random order (some of them twice) leaves the count of the sets that
+     * can still be collected equal to a full count of the sets among the cards left, until none is left.
+     */
+    @Test
+    void setsLeftMatchRecount() {
+        List<Integer> left = new ArrayList<>();
+        for (int card = 0; card < config.deckSize; ++card)
+            left.add(card);
+        Collections.shuffle(left, new Random(5));
+        assertEquals(recount(left), oracle.setsLeft());
+        while (!left.isEmpty()) {
+            int card = left.remove(left.size() - 1);
+            oracle.removeCard(card);
+            if (card % 3 == 0)
+                oracle.removeCard(card);
+            int expected = recount(left);
+            assertEquals(expected, oracle.setsLeft(), left.size() + " cards left");
+            assertEquals(expected > 0, oracle.anySetLeft(), left.size() + " cards left");
+        }
+    }
+
+    private int recount(List<Integer> cards) {
+        return combinatorial.findSets(cards.stream().mapToInt(Integer::intValue).toArray(), Integer.MAX_VALUE).size();
+    }
+}
@@ -0,0 +1,105 @@
+package bguspl.set.ex;
+
+import bguspl.set.Config;
+import bguspl.set.Env;
+import bguspl.set.UserInterfaceHeadless;
+import bguspl.set.Util;
+import bguspl.set.UtilImpl;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Properties;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TableTest {
+
+    Logger logger;
+    Table table;
+    Config config;
+
+    // finds the sets from scratch, without the set index the table keeps its sets with
+    Util combinatorial;
+
+    @BeforeEach
+    void setUp() {
+        logger = Logger.getLogger("TableTest");
+        logger.setUseParentHandlers(false);
+        Properties properties = new Properties();
+        properties.setProperty("FeatureCount", "4");
+        properties.setProperty("Columns", "5");
+        config = new Config(logger, properties);
+        table = new Table(new Env(logger, config, new UserInterfaceHeadless(), new UtilImpl(config, logger)));
+        properties.setProperty("SetFinder", "combinatorial");
+        combinatorial = new UtilImpl(new Config(logger, properties), logger);
+    }
+
+    /**
+     * Cards placed in and removed from random slots (one at a time or several at once) keep the sets of the table, the
+     * ones of its snapshot and the cards of its snapshot equal to the ones found among the cards on the table after
+     * every change.
+     */
+    @Test
+    void liveSetsMatchTheCardsOnTable() {
+        Random random = new Random(4);
+        List<Integer> deck = new ArrayList<>();
+        for (int card = 0; card < config.deckSize; ++card)
+            deck.add(card);
+        for (int step = 0; step < 2000; ++step) {
+            int slot = random.nextInt(config.tableSize);
+            if (table.getSlot(slot).getCard() == null) {
+                if (deck.isEmpty()) continue;
+                table.placeCard(deck.remove(random.nextInt(deck.size())), slot);
+            } else if (random.nextInt(4) == 0) {
+                BitSet slots = new BitSet();
+                for (int i = random.nextInt(4); i >= 0; --i)
+                    slots.set(random.nextInt(config.tableSize));
+                for (int removed = slots.nextSetBit(0); removed >= 0; removed = slots.nextSetBit(removed + 1))
+                    if (table.getSlot(removed).getCard() != null)
+                        deck.add(table.getSlot(removed).getCard());
+                table.removeCards(slots);
+            } else {
+                deck.add(table.getSlot(slot).getCard());
+                table.removeCard(slot);
+            }
+            checkSets("step " + step);
+        }
+    }
+
+    private void checkSets(String message) {
+        int[] cards = table.getTableCards().stream().mapToInt(Integer::intValue).toArray();
+        Set<String> expected = sets(combinatorial.findSets(cards, Integer.MAX_VALUE));
+        assertEquals(expected, sets(table.getSets()), message);
+        assertEquals(expected.size(), table.countSets(), message);
+        assertEquals(!expected.isEmpty(), table.hasSet(), message);
+
+        TableSnapshot snapshot = table.snapshot();
+        List<int[]> snapshotSets = new ArrayList<>();
+        for (int set = 0; set < snapshot.setCount(); ++set)
+            snapshotSets.add(Arrays.stream(snapshot.set(set)).map(snapshot::card).toArray());
+        assertEquals(expected, sets(snapshotSets), message);
+        for (int slot = 0; slot < snapshot.size(); ++slot) {
+            Integer card = table.getSlot(slot).getCard();
+            assertEquals(card == null ? -1 : card, snapshot.card(slot), message + ", slot " + slot);
+        }
+    }
+
+    //the sets as sorted card lists, in no particular order
+    private static Set<String> sets(List<int[]> sets) {
+        Set<String> sorted = new TreeSet<>();
+        for (int[] set : sets) {
+            int[] cards = set.clone();
+            Arrays.sort(cards);
+            sorted.add(Arrays.toString(cards));
+        }
+        return sorted;
+    }
+}